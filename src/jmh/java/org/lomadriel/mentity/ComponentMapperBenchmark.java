@@ -0,0 +1,102 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of adding and removing a component depending on the number of worlds alive in the process.
+ * The cost per operation should not depend on {@code worlds}.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ComponentMapperBenchmark {
+	private static final int BATCH_SIZE = 1024;
+
+	public static class Position extends Component {
+		float x;
+		float y;
+	}
+
+	@Param({"1", "16"})
+	public int worlds;
+
+	private World[] otherWorlds;
+	private World world;
+	private ComponentMapper<Position> mapper;
+	private final Position[] components = new Position[BATCH_SIZE];
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.otherWorlds = new World[this.worlds - 1];
+		for (int i = 0; i < this.otherWorlds.length; i++) {
+			this.otherWorlds[i] = new WorldBuilder().toWorld();
+			this.otherWorlds[i].createEntities(BATCH_SIZE);
+		}
+
+		this.world = new WorldBuilder().toWorld();
+		this.world.createEntities(BATCH_SIZE);
+		this.world.update();
+
+		this.mapper = this.world.getMapper(Position.class);
+
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			this.components[i] = new Position();
+		}
+	}
+
+	/**
+	 * Adds a component to a batch of entities, removes them and updates the world.
+	 *
+	 * @return the mapper.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public ComponentMapper<Position> addRemove() {
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			this.mapper.addComponent(i, this.components[i]);
+		}
+
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			this.mapper.removeComponent(i);
+		}
+
+		this.world.update();
+
+		return this.mapper;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of an entity creation depending on the number of living entities.
+ * The cost per operation should stay flat whatever {@code liveEntities} is.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EntityManagerBenchmark {
+	private static final int BATCH_SIZE = 1024;
+
+	@Param({"1000", "100000", "1000000"})
+	public int liveEntities;
+
+	private EntityManager entityManager;
+	private final int[] batch = new int[BATCH_SIZE];
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.entityManager = new EntityManager();
+
+		for (int i = 0; i < this.liveEntities; i++) {
+			this.entityManager.createEntity();
+		}
+
+		// Leaves holes in the id space, so the free list is used as soon as the benchmark starts.
+		for (int i = 0; i < this.liveEntities; i += 2) {
+			this.entityManager.destroyEntity(i);
+		}
+
+		this.entityManager.flush();
+
+		for (int i = 0; i < this.liveEntities; i += 2) {
+			this.entityManager.createEntity();
+		}
+	}
+
+	/**
+	 * Creates a batch of entities, destroys them and flushes the manager.
+	 *
+	 * @return the last created entity.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public int churn() {
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			this.batch[i] = this.entityManager.createEntity();
+		}
+
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			this.entityManager.destroyEntity(this.batch[i]);
+		}
+
+		this.entityManager.flush();
+
+		return this.batch[BATCH_SIZE - 1];
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.lomadriel.mentity.util.EntitySet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the update of the entities of a filter, as done on each flush, when the entity ids are large and sparse.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EntitySetBenchmark {
+	private static final int ENTITY_RANGE = 1 << 23;
+	private static final int MODIFIED = 1024;
+
+	@Param({"BITSET", "COMPRESSED"})
+	public EntitySetStorage storage;
+
+	@Param({"10000", "1000000"})
+	public int entities;
+
+	private EntitySet members;
+	private final BitSet modified = new BitSet();
+	private final BitSet matching = new BitSet();
+	private final BitSet removed = new BitSet();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(0);
+
+		BitSet members = new BitSet();
+		for (int i = 0; i < this.entities; i++) {
+			members.set(random.nextInt(ENTITY_RANGE));
+		}
+
+		this.members = this.storage.createEntitySet();
+		this.members.or(members);
+
+		for (int i = 0; i < MODIFIED; i++) {
+			int entity = random.nextInt(ENTITY_RANGE);
+			this.modified.set(entity);
+
+			if (random.nextBoolean()) {
+				this.matching.set(entity);
+			}
+		}
+	}
+
+	/**
+	 * Computes the entities which left the filter and replaces the modified entities by the matching ones.
+	 *
+	 * @return the entities of the filter.
+	 */
+	@Benchmark
+	public EntitySet update() {
+		this.removed.clear();
+		this.members.intersect(this.modified, this.removed);
+		this.removed.andNot(this.matching);
+
+		this.members.andNot(this.modified);
+		this.members.or(this.matching);
+
+		return this.members;
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Group of the entities which have exactly the same set of components.
+ * <p>
+ * Entities of an archetype are stored contiguously in fixed-size chunks of {@link #CHUNK_SIZE} entities.
+ * Only the first {@link #getChunkSize(int)} entities of a chunk are valid, the order of the entities changes when
+ * an entity leaves the archetype.
+ * <pre>{@code
+ * for (Archetype archetype : world.getArchetypes(filter)) {
+ *     for (int i = 0; i < archetype.getChunkCount(); i++) {
+ *         int[] chunk = archetype.getChunk(i);
+ *         for (int j = 0; j < archetype.getChunkSize(i); j++) {
+ *             update(chunk[j]);
+ *         }
+ *     }
+ * }
+ * }</pre>
+ *
+ * @author Jérôme BOULMIER
+ * @see WorldBuilder.Backend#ARCHETYPE
+ * @since 1.4
+ */
+public final class Archetype {
+	/**
+	 * Number of entities in a chunk.
+	 */
+	public static final int CHUNK_SIZE = 1024;
+
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final BitSet signature;
+	private final BitSet filters = new BitSet();
+	private int[][] chunks = new int[1][];
+	private int size;
+
+	Archetype(BitSet signature) {
+		this.signature = signature;
+	}
+
+	/**
+	 * Returns the number of entities in this archetype.
+	 *
+	 * @return the number of entities.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of chunks used by this archetype.
+	 *
+	 * @return the number of chunks.
+	 */
+	public int getChunkCount() {
+		return (this.size + CHUNK_MASK) >>> CHUNK_SHIFT;
+	}
+
+	/**
+	 * Returns the chunk at the given position.
+	 *
+	 * @param index position of the chunk, lower than {@link #getChunkCount()}.
+	 * @return the entities of the chunk.
+	 */
+	public int[] getChunk(int index) {
+		return this.chunks[index];
+	}
+
+	/**
+	 * Returns the number of valid entities in the chunk at the given position.
+	 *
+	 * @param index position of the chunk, lower than {@link #getChunkCount()}.
+	 * @return the number of entities in the chunk.
+	 */
+	public int getChunkSize(int index) {
+		return Math.min(CHUNK_SIZE, this.size - (index << CHUNK_SHIFT));
+	}
+
+	BitSet getSignature() {
+		return this.signature;
+	}
+
+	BitSet getFilters() {
+		return this.filters;
+	}
+
+	int getEntity(int row) {
+		return this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+	}
+
+	/**
+	 * Appends the given entity.
+	 *
+	 * @param entity an entity.
+	 * @return the row of the entity.
+	 */
+	int add(int entity) {
+		int chunkIndex = this.size >>> CHUNK_SHIFT;
+
+		if (chunkIndex == this.chunks.length) {
+			this.chunks = Arrays.copyOf(this.chunks, this.chunks.length << 1);
+		}
+
+		if (this.chunks[chunkIndex] == null) {
+			this.chunks[chunkIndex] = new int[CHUNK_SIZE];
+		}
+
+		this.chunks[chunkIndex][this.size & CHUNK_MASK] = entity;
+
+		return this.size++;
+	}
+
+	/**
+	 * Removes the entity at the given row, the last entity takes its place.
+	 *
+	 * @param row row of the entity to remove.
+	 * @return the entity moved to the given row, -1 if no entity has been moved.
+	 */
+	int remove(int row) {
+		int last = --this.size;
+		if (row == last) {
+			return -1;
+		}
+
+		int movedEntity = getEntity(last);
+		this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = movedEntity;
+
+		return movedEntity;
+	}
+}
@@ -0,0 +1,363 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.lomadriel.mentity.util.Bag;
+import org.lomadriel.mentity.util.EntitySet;
+import org.lomadriel.mentity.util.IntBag;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class used to manage filtered systems with archetypes.
+ * <p>
+ * Entities are grouped by set of components. When the components of an entity change, the entity is moved to the
+ * archetype of its new set at the next flush. Filters are matched once per archetype, and the entities of the filters
+ * are only updated for the entities which moved to an archetype matching other filters. Archetypes left empty by a
+ * flush are dropped, so only the sets of components in use are kept.
+ *
+ * @author Jérôme BOULMIER
+ * @see WorldBuilder.Backend#ARCHETYPE
+ * @since 1.4
+ */
+class ArchetypeSystemManager extends FilterBackend {
+	private final EntityManager entityManager;
+	private final ComponentManager componentManager;
+	private final EntitySetStorage entitySetStorage;
+
+	private final Map<BitSet, Archetype> archetypes = new LinkedHashMap<>();
+
+	/**
+	 * Archetypes which became empty during the current update.
+	 */
+	private final List<Archetype> emptiedArchetypes = new ArrayList<>();
+
+	private final Map<Filter, Integer> filterIndexes = new HashMap<>();
+	private final List<Filter> filters = new ArrayList<>();
+	private final List<EntitySet> filterEntities = new ArrayList<>();
+	private final List<List<FilteredSystem>> filterSystems = new ArrayList<>();
+	private final List<Query> queries = new ArrayList<>();
+
+	/**
+	 * Entities which entered or left each filter since the last update.
+	 */
+	private final List<BitSet> filterInserted = new ArrayList<>();
+	private final List<BitSet> filterRemoved = new ArrayList<>();
+
+	private final Bag<Archetype> entityArchetypes = new Bag<>();
+	private final IntBag entityRows = new IntBag();
+
+	/**
+	 * Filters whose archetypes gained or lost entities during the current update.
+	 */
+	private final BitSet updatedFilters = new BitSet();
+
+	private boolean rebuild = true;
+	private long updates;
+	private long skippedUpdates;
+
+	ArchetypeSystemManager(EntityManager entityManager, ComponentManager componentManager,
+	                       EntitySetStorage entitySetStorage) {
+		this.entityManager = entityManager;
+		this.componentManager = componentManager;
+		this.entitySetStorage = entitySetStorage;
+	}
+
+	@Override
+	void register(FilteredSystem filteredEntitySystem) {
+		int filterIndex = indexOf(filteredEntitySystem.getFilter());
+
+		this.filterSystems.get(filterIndex).add(filteredEntitySystem);
+		filteredEntitySystem.entities = this.filterEntities.get(filterIndex);
+	}
+
+	@Override
+	Query query(Filter filter) {
+		return this.queries.get(indexOf(filter));
+	}
+
+	/**
+	 * Returns the index of the given filter, adding it if needed.
+	 *
+	 * @param filter a filter.
+	 * @return the index of the filter.
+	 */
+	private int indexOf(Filter filter) {
+		Integer index = this.filterIndexes.get(filter);
+		if (index != null) {
+			return index;
+		}
+
+		int filterIndex = this.filters.size();
+		this.filterIndexes.put(filter, filterIndex);
+		this.filters.add(filter);
+
+		EntitySet entities = this.entitySetStorage.createEntitySet();
+		BitSet inserted = new BitSet();
+		Query query = new Query(filter, entities);
+		this.filterEntities.add(entities);
+		this.filterSystems.add(new ArrayList<>());
+		this.queries.add(query);
+		this.filterInserted.add(inserted);
+		this.filterRemoved.add(new BitSet());
+
+		for (Archetype archetype : this.archetypes.values()) {
+			if (filter.getPlan().matches(archetype.getSignature())) {
+				archetype.getFilters().set(filterIndex);
+
+				for (int row = 0; row < archetype.size(); row++) {
+					inserted.set(archetype.getEntity(row));
+				}
+			}
+		}
+
+		// Given to the systems by the next update, once they are initialized.
+		entities.or(inserted);
+		query.count = inserted.cardinality();
+
+		return filterIndex;
+	}
+
+	@Override
+	void updateAll(BitSet modifiedEntities) {
+		BitSet entities = modifiedEntities;
+		if (this.rebuild) {
+			this.rebuild = false;
+			entities = this.entityManager.getEntities();
+		}
+
+		if (!entities.isEmpty()) {
+			this.updatedFilters.clear();
+			for (int entity = entities.nextSetBit(0); entity != -1; entity = entities.nextSetBit(entity + 1)) {
+				update(entity);
+			}
+
+			this.updates += this.updatedFilters.cardinality();
+			this.skippedUpdates += this.filters.size() - this.updatedFilters.cardinality();
+
+			for (Archetype archetype : this.emptiedArchetypes) {
+				// Entities may have moved back to it later in the update.
+				if (archetype.size() == 0) {
+					this.archetypes.remove(archetype.getSignature(), archetype);
+				}
+			}
+
+			this.emptiedArchetypes.clear();
+		}
+
+		for (int i = 0; i < this.filters.size(); i++) {
+			BitSet inserted = this.filterInserted.get(i);
+			BitSet removed = this.filterRemoved.get(i);
+
+			fire(this.filterSystems.get(i), inserted, removed);
+
+			inserted.clear();
+			removed.clear();
+		}
+	}
+
+	@Override
+	void reset() {
+		this.archetypes.clear();
+		this.entityArchetypes.clear();
+		this.entityRows.clear();
+
+		for (int i = 0; i < this.filters.size(); i++) {
+			BitSet removed = this.filterRemoved.get(i);
+			removed.clear();
+			this.filterEntities.get(i).forEach(removed::set);
+			// The systems were never given the entities inserted since the last update.
+			removed.andNot(this.filterInserted.get(i));
+			this.filterEntities.get(i).clear();
+			this.filterInserted.get(i).clear();
+			this.queries.get(i).count = 0;
+
+			fire(this.filterSystems.get(i), this.filterInserted.get(i), removed);
+
+			removed.clear();
+		}
+
+		this.rebuild = true;
+	}
+
+	/**
+	 * Returns the archetypes matching the given {@code filter}.
+	 *
+	 * @param filter a filter.
+	 * @return the archetypes matching the filter.
+	 */
+	List<Archetype> getArchetypes(Filter filter) {
+		List<Archetype> archetypes = new ArrayList<>();
+
+		for (Archetype archetype : this.archetypes.values()) {
+			if (archetype.size() != 0 && filter.getPlan().matches(archetype.getSignature())) {
+				archetypes.add(archetype);
+			}
+		}
+
+		return archetypes;
+	}
+
+	/**
+	 * Describes the archetypes, one per line with their number of entities and the filters they match.
+	 *
+	 * @return a description of the archetypes.
+	 */
+	@Override
+	String dumpPlan() {
+		StringBuilder builder = new StringBuilder();
+
+		for (Archetype archetype : this.archetypes.values()) {
+			BitSet signature = archetype.getSignature();
+
+			if (signature.isEmpty()) {
+				builder.append("entities");
+			}
+
+			for (int type = signature.nextSetBit(0); type != -1; type = signature.nextSetBit(type + 1)) {
+				if (type != signature.nextSetBit(0)) {
+					builder.append(" & ");
+				}
+
+				builder.append(ComponentType.get(type).getComponentClass().getSimpleName());
+			}
+
+			builder.append(" [size=").append(archetype.size()).append(']');
+
+			BitSet filters = archetype.getFilters();
+			for (int i = filters.nextSetBit(0); i != -1; i = filters.nextSetBit(i + 1)) {
+				builder.append(" <- filter ").append(i);
+			}
+
+			builder.append(System.lineSeparator());
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Returns the number of filter updates done, a filter is updated when an entity enters or leaves one of its
+	 * archetypes.
+	 *
+	 * @return the number of filter updates done.
+	 */
+	@Override
+	long getUpdates() {
+		return this.updates;
+	}
+
+	@Override
+	long getSkippedUpdates() {
+		return this.skippedUpdates;
+	}
+
+	/**
+	 * Moves the given entity to the archetype of its current set of components.
+	 *
+	 * @param entity an entity.
+	 */
+	private void update(int entity) {
+		Archetype previousArchetype = this.entityArchetypes.get(entity);
+		Archetype archetype = null;
+
+		if (this.entityManager.entityExists(entity)) {
+			archetype = getArchetype(this.componentManager.getSignature(entity));
+		}
+
+		if (archetype == previousArchetype) {
+			return;
+		}
+
+		if (previousArchetype != null) {
+			int movedEntity = previousArchetype.remove(this.entityRows.get(entity));
+			if (movedEntity != -1) {
+				this.entityRows.set(movedEntity, this.entityRows.get(entity));
+			}
+
+			if (previousArchetype.size() == 0) {
+				this.emptiedArchetypes.add(previousArchetype);
+			}
+		}
+
+		this.entityArchetypes.set(entity, archetype);
+
+		if (archetype != null) {
+			this.entityRows.set(entity, archetype.add(entity));
+		}
+
+		BitSet previousFilters = previousArchetype == null ? null : previousArchetype.getFilters();
+		BitSet filters = archetype == null ? null : archetype.getFilters();
+
+		if (previousFilters != null) {
+			this.updatedFilters.or(previousFilters);
+		}
+
+		if (filters != null) {
+			this.updatedFilters.or(filters);
+		}
+
+		if (previousFilters != null) {
+			for (int i = previousFilters.nextSetBit(0); i != -1; i = previousFilters.nextSetBit(i + 1)) {
+				if (filters == null || !filters.get(i)) {
+					this.filterEntities.get(i).remove(entity);
+					this.filterRemoved.get(i).set(entity);
+					this.queries.get(i).count--;
+				}
+			}
+		}
+
+		if (filters != null) {
+			for (int i = filters.nextSetBit(0); i != -1; i = filters.nextSetBit(i + 1)) {
+				if (previousFilters == null || !previousFilters.get(i)) {
+					this.filterEntities.get(i).add(entity);
+					this.filterInserted.get(i).set(entity);
+					this.queries.get(i).count++;
+				}
+			}
+		}
+	}
+
+	private Archetype getArchetype(BitSet signature) {
+		Archetype archetype = this.archetypes.get(signature);
+
+		if (archetype == null) {
+			// The signature of the entity keeps changing, the archetype needs its own copy.
+			signature = (BitSet) signature.clone();
+			archetype = new Archetype(signature);
+
+			for (int i = 0; i < this.filters.size(); i++) {
+				if (this.filters.get(i).getPlan().matches(signature)) {
+					archetype.getFilters().set(i);
+				}
+			}
+
+			this.archetypes.put(signature, archetype);
+		}
+
+		return archetype;
+	}
+}
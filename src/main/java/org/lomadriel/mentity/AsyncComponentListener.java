@@ -0,0 +1,275 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.lomadriel.mentity.util.LongRingBuffer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Component listener delivering the events to another listener on worker threads.
+ * <p>
+ * The thread of the world only writes the entity and the type id in a preallocated ring buffer, the events are then
+ * drained and delivered by the consumer threads. With several consumers, events are delivered concurrently and their
+ * order isn't kept. Idle consumers are parked until an event is published.
+ * <p>
+ * Can be registered as any other {@link IntComponentListener}, must be closed once unregistered.
+ *
+ * @author Jérôme BOULMIER
+ * @see World#addComponentRemovedListener(ComponentType, IntComponentListener)
+ * @since 1.4
+ */
+public final class AsyncComponentListener implements IntComponentListener, AutoCloseable {
+	/**
+	 * What to do when the ring buffer is full.
+	 */
+	public enum Backpressure {
+		/**
+		 * Waits until a consumer frees a slot.
+		 */
+		BLOCK,
+		/**
+		 * Drops the event, see {@link #getDropped()}.
+		 */
+		DROP,
+		/**
+		 * Doubles the capacity of the ring buffer.
+		 */
+		GROW
+	}
+
+	private final IntComponentListener listener;
+	private final Backpressure backpressure;
+	private final LongRingBuffer buffer;
+	private final Thread[] consumers;
+	private final AtomicLong delivered = new AtomicLong();
+
+	/**
+	 * Number of consumers parked because the buffer was empty, the producer only unparks them when there are some.
+	 */
+	private final AtomicInteger parkedConsumers = new AtomicInteger();
+
+	/**
+	 * Thread waiting in {@link #awaitDelivery()}, unparked by the consumers once the buffer is drained.
+	 */
+	private volatile Thread deliveryWaiter;
+
+	private long published;
+	private long dropped;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates an asynchronous listener with one consumer thread, blocking when the buffer is full.
+	 *
+	 * @param listener listener called on the consumer thread.
+	 * @param capacity capacity of the ring buffer.
+	 * @throws NullPointerException     if the listener is null.
+	 * @throws IllegalArgumentException if the capacity isn't positive.
+	 */
+	public AsyncComponentListener(IntComponentListener listener, int capacity) {
+		this(listener, capacity, Backpressure.BLOCK, 1);
+	}
+
+	/**
+	 * Creates an asynchronous listener.
+	 *
+	 * @param listener     listener called on the consumer threads, must be thread-safe if there are several consumers.
+	 * @param capacity     capacity of the ring buffer.
+	 * @param backpressure behavior when the ring buffer is full.
+	 * @param consumers    number of consumer threads.
+	 * @throws NullPointerException     if the listener or the backpressure is null.
+	 * @throws IllegalArgumentException if the capacity or the number of consumers isn't positive.
+	 */
+	public AsyncComponentListener(IntComponentListener listener, int capacity, Backpressure backpressure,
+	                              int consumers) {
+		if (listener == null) {
+			throw new NullPointerException("listener can't be null");
+		}
+
+		if (backpressure == null) {
+			throw new NullPointerException("backpressure can't be null");
+		}
+
+		if (consumers <= 0) {
+			throw new IllegalArgumentException("consumers must be positive");
+		}
+
+		this.listener = listener;
+		this.backpressure = backpressure;
+		this.buffer = new LongRingBuffer(capacity);
+		this.consumers = new Thread[consumers];
+
+		for (int i = 0; i < consumers; i++) {
+			this.consumers[i] = new Thread(this::consume, "mentity-async-listener-" + i);
+			this.consumers[i].setDaemon(true);
+			this.consumers[i].start();
+		}
+	}
+
+	/**
+	 * Publishes the event. Must always be called by the same thread, the thread of the world.
+	 *
+	 * @param entity the entity affected.
+	 * @param type   type of the component.
+	 * @throws IllegalStateException if the listener is closed.
+	 */
+	@Override
+	public void onComponent(int entity, ComponentType type) {
+		if (!this.running) {
+			throw new IllegalStateException("The listener is closed");
+		}
+
+		long record = (long) entity << 32 | type.getId();
+
+		while (!this.buffer.offer(record)) {
+			switch (this.backpressure) {
+				case DROP:
+					this.dropped++;
+					return;
+				case GROW:
+					this.buffer.grow();
+					break;
+				default:
+					Thread.yield();
+					break;
+			}
+		}
+
+		this.published++;
+
+		if (this.parkedConsumers.get() != 0) {
+			unparkConsumers();
+		}
+	}
+
+	/**
+	 * Waits until all the published events have been delivered.
+	 * Must be called by the thread of the world.
+	 *
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	public void awaitDelivery() throws InterruptedException {
+		this.deliveryWaiter = Thread.currentThread();
+
+		try {
+			while (this.delivered.get() < this.published) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+
+				LockSupport.park(this);
+			}
+		} finally {
+			this.deliveryWaiter = null;
+		}
+	}
+
+	/**
+	 * Returns the number of events dropped because the ring buffer was full.
+	 * Must be called by the thread of the world.
+	 *
+	 * @return the number of events dropped.
+	 * @see Backpressure#DROP
+	 */
+	public long getDropped() {
+		return this.dropped;
+	}
+
+	/**
+	 * Returns the number of events waiting to be delivered.
+	 *
+	 * @return the number of events waiting.
+	 */
+	public int getPending() {
+		return this.buffer.size();
+	}
+
+	/**
+	 * Delivers the remaining events and stops the consumer threads.
+	 * If the thread is interrupted while waiting for the consumers, returns with the interrupt flag set and the
+	 * consumers finish the delivery in the background.
+	 */
+	@Override
+	public void close() {
+		this.running = false;
+		unparkConsumers();
+
+		try {
+			for (Thread consumer : this.consumers) {
+				consumer.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void consume() {
+		while (true) {
+			long record = this.buffer.poll();
+
+			if (record == LongRingBuffer.EMPTY) {
+				if (!this.running && this.buffer.size() == 0) {
+					return;
+				}
+
+				idle();
+				continue;
+			}
+
+			try {
+				this.listener.onComponent((int) (record >>> 32), ComponentType.get((int) record));
+			} catch (RuntimeException e) {
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+			} finally {
+				this.delivered.incrementAndGet();
+
+				Thread waiter = this.deliveryWaiter;
+				if (waiter != null && this.buffer.size() == 0) {
+					LockSupport.unpark(waiter);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parks the current consumer until an event is published or the listener is closed.
+	 */
+	private void idle() {
+		this.parkedConsumers.incrementAndGet();
+
+		// Checked once counted as parked, so an event published in between is either seen here or signaled.
+		if (this.running && this.buffer.size() == 0) {
+			LockSupport.park(this);
+		}
+
+		this.parkedConsumers.decrementAndGet();
+	}
+
+	private void unparkConsumers() {
+		for (Thread consumer : this.consumers) {
+			LockSupport.unpark(consumer);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.BitSet;
+
+/**
+ * Net additions and removals of a component since the last delivery.
+ * <p>
+ * The membership of each changed entity is recorded before its first change, then compared to the membership once
+ * the world has been flushed: an entity is reported only if it really gained or lost the component.
+ *
+ * @author Jérôme BOULMIER
+ * @see ComponentBatchListener
+ * @since 1.4
+ */
+final class ChangeSet {
+	private final BitSet touched = new BitSet();
+	private final BitSet before = new BitSet();
+	private final BitSet added = new BitSet();
+	private final BitSet removed = new BitSet();
+	private final BitSet scratch = new BitSet();
+
+	/**
+	 * Records the membership of the given entity, unless it was already changed since the last delivery.
+	 *
+	 * @param entity  an entity about to gain or lose the component.
+	 * @param members entities owning the component, before the change.
+	 */
+	void touch(int entity, BitSet members) {
+		if (!this.touched.get(entity)) {
+			this.touched.set(entity);
+
+			if (members.get(entity)) {
+				this.before.set(entity);
+			}
+		}
+	}
+
+	/**
+	 * Records the membership of the given entities, except the ones already changed since the last delivery.
+	 *
+	 * @param entities entities about to gain or lose the component.
+	 * @param members  entities owning the component, before the change.
+	 */
+	void touch(BitSet entities, BitSet members) {
+		this.scratch.clear();
+		this.scratch.or(entities);
+		this.scratch.andNot(this.touched);
+		this.scratch.and(members);
+
+		this.before.or(this.scratch);
+		this.touched.or(entities);
+	}
+
+	/**
+	 * Computes the entities which gained or lost the component.
+	 *
+	 * @param members entities owning the component, once flushed.
+	 * @return {@code true} if at least one entity gained or lost the component.
+	 */
+	boolean compute(BitSet members) {
+		this.added.clear();
+		this.added.or(this.touched);
+		this.added.and(members);
+		this.added.andNot(this.before);
+
+		this.removed.clear();
+		this.removed.or(this.before);
+		this.removed.andNot(members);
+
+		return !this.added.isEmpty() || !this.removed.isEmpty();
+	}
+
+	BitSet getAdded() {
+		return this.added;
+	}
+
+	BitSet getRemoved() {
+		return this.removed;
+	}
+
+	boolean isEmpty() {
+		return this.touched.isEmpty();
+	}
+
+	void clear() {
+		this.touched.clear();
+		this.before.clear();
+		this.added.clear();
+		this.removed.clear();
+	}
+}
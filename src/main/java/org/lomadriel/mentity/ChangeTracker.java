@@ -0,0 +1,119 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.BitSet;
+
+/**
+ * Entities modified since the last flush of a world.
+ * <p>
+ * Each world owns its tracker and hands it to its mappers, so adding or removing a component only marks the entity in
+ * its own world.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+final class ChangeTracker {
+	private static final String ENTITY_DOES_NOT_EXIST_MSG = "This entity doesn't exist";
+
+	private final EntityManager entityManager;
+	private final BitSet modifiedEntities = new BitSet();
+	private boolean dirty = true;
+
+	ChangeTracker(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	/**
+	 * Marks the given entity as modified.
+	 *
+	 * @param entity an entity.
+	 * @throws IllegalArgumentException if the entity doesn't exist.
+	 */
+	void modified(int entity) {
+		if (!this.entityManager.entityExists(entity)) {
+			throw new IllegalArgumentException(ENTITY_DOES_NOT_EXIST_MSG);
+		}
+
+		this.modifiedEntities.set(entity);
+		this.dirty = true;
+	}
+
+	/**
+	 * Marks the given entities as modified.
+	 *
+	 * @param entities entities.
+	 * @throws IllegalArgumentException if one of the entities doesn't exist.
+	 */
+	void modified(BitSet entities) {
+		if (!this.entityManager.entitiesExist(entities)) {
+			throw new IllegalArgumentException(ENTITY_DOES_NOT_EXIST_MSG);
+		}
+
+		this.modifiedEntities.or(entities);
+		this.dirty = true;
+	}
+
+	/**
+	 * Marks the entity as modified without checking its existence, used for the entities being created or destroyed.
+	 *
+	 * @param entity an entity.
+	 */
+	void touched(int entity) {
+		this.modifiedEntities.set(entity);
+		this.dirty = true;
+	}
+
+	/**
+	 * Marks the entities as modified without checking their existence, used for the entities being created or
+	 * destroyed.
+	 *
+	 * @param entities entities.
+	 */
+	void touched(BitSet entities) {
+		this.modifiedEntities.or(entities);
+		this.dirty = true;
+	}
+
+	/**
+	 * Requires a flush without any modified entity.
+	 */
+	void markDirty() {
+		this.dirty = true;
+	}
+
+	boolean isDirty() {
+		return this.dirty;
+	}
+
+	BitSet getModifiedEntities() {
+		return this.modifiedEntities;
+	}
+
+	/**
+	 * Forgets the modifications, called once the world has been flushed.
+	 */
+	void clear() {
+		this.modifiedEntities.clear();
+		this.dirty = false;
+	}
+}
@@ -46,4 +46,13 @@ public abstract class Component implements Serializable {
 	public final int getEntity() {
 		return this.entity;
 	}
+
+	/**
+	 * Resets the fields of the component before it goes back to its pool.
+	 * Overrides this method if the component is pooled.
+	 *
+	 * @see ComponentPool
+	 */
+	protected void reset() {
+	}
 }
@@ -0,0 +1,48 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.BitSet;
+import java.util.EventListener;
+
+/**
+ * Listener receiving the component changes of a mapper once per flush of the world.
+ * <p>
+ * Changes are net: an entity is reported only if it owns the component after the flush and didn't before, or the
+ * reverse. A component added then removed during the same iteration, or replaced, isn't reported. A component removed
+ * then added again is reported as removed, since the removal is applied by the flush.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+@FunctionalInterface
+public interface ComponentBatchListener extends EventListener {
+	/**
+	 * Calls at the end of the flush of the world, when at least one component of the given type changed.
+	 * The sets are reused by the mapper and are only valid during the call, they must not be modified.
+	 *
+	 * @param type    type of the components.
+	 * @param added   entities which received the component.
+	 * @param removed entities which lost the component.
+	 */
+	void onComponentsChanged(ComponentType type, BitSet added, BitSet removed);
+}
@@ -0,0 +1,151 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Layout of a component made only of primitive fields.
+ * <p>
+ * The layout is declared by the component class itself: every non-static field must be an {@code int}, a {@code long},
+ * a {@code float} or a {@code double}. Fields are sorted by name, so the layout doesn't depend on the JVM.
+ * A field has an index among the fields of the same type and an offset in a record of {@link #getSize()} bytes.
+ *
+ * @author Jérôme BOULMIER
+ * @see PackedComponentMapper
+ * @see OffHeapComponentMapper
+ * @since 1.4
+ */
+final class ComponentLayout {
+	private final Class<? extends Component> componentClass;
+	private final Field[] fields;
+	private final int[] offsets;
+	private final int size;
+
+	ComponentLayout(Class<? extends Component> componentClass) {
+		this.componentClass = componentClass;
+
+		List<Field> fields = new ArrayList<>();
+		for (Class<?> clazz = componentClass; clazz != Component.class; clazz = clazz.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+
+				Class<?> type = field.getType();
+				if (type != int.class && type != long.class && type != float.class && type != double.class) {
+					throw new IllegalArgumentException(componentClass.getName() + '.' + field.getName()
+							+ " isn't an int, a long, a float or a double");
+				}
+
+				field.setAccessible(true);
+				fields.add(field);
+			}
+		}
+
+		// 8 bytes fields first, so every field is aligned.
+		fields.sort(Comparator.<Field>comparingInt(field -> -ComponentLayout.sizeOf(field.getType()))
+				.thenComparing(Field::getName));
+
+		this.fields = fields.toArray(new Field[fields.size()]);
+		this.offsets = new int[this.fields.length];
+
+		int offset = 0;
+		for (int i = 0; i < this.fields.length; i++) {
+			this.offsets[i] = offset;
+			offset += ComponentLayout.sizeOf(this.fields[i].getType());
+		}
+
+		this.size = offset;
+	}
+
+	/**
+	 * Returns the fields of the given type, in layout order.
+	 *
+	 * @param type a primitive type.
+	 * @return the fields of the given type.
+	 */
+	Field[] getFields(Class<?> type) {
+		List<Field> fields = new ArrayList<>();
+		for (Field field : this.fields) {
+			if (field.getType() == type) {
+				fields.add(field);
+			}
+		}
+
+		return fields.toArray(new Field[fields.size()]);
+	}
+
+	/**
+	 * Returns all the fields, in layout order.
+	 *
+	 * @return the fields.
+	 */
+	Field[] getFields() {
+		return this.fields.clone();
+	}
+
+	/**
+	 * Returns the offset of the field with the given name and type in a record.
+	 *
+	 * @param name name of the field.
+	 * @param type type of the field.
+	 * @return the offset of the field in bytes.
+	 * @throws IllegalArgumentException if there is no field with this name and this type.
+	 */
+	int getOffset(String name, Class<?> type) {
+		for (int i = 0; i < this.fields.length; i++) {
+			if (this.fields[i].getName().equals(name) && this.fields[i].getType() == type) {
+				return this.offsets[i];
+			}
+		}
+
+		throw new IllegalArgumentException(this.componentClass.getName() + " has no " + type + " field named " + name);
+	}
+
+	/**
+	 * Returns the offset of the field at the given position in the layout.
+	 *
+	 * @param index position of the field.
+	 * @return the offset of the field in bytes.
+	 */
+	int getOffset(int index) {
+		return this.offsets[index];
+	}
+
+	/**
+	 * Returns the size of a record.
+	 *
+	 * @return the size of a record in bytes.
+	 */
+	int getSize() {
+		return this.size;
+	}
+
+	private static int sizeOf(Class<?> type) {
+		return (type == long.class || type == double.class) ? 8 : 4;
+	}
+}
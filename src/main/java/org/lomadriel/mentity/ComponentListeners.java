@@ -0,0 +1,121 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.Arrays;
+
+/**
+ * Listeners of one kind of component event: a listener of all the types and the subscribers of each type.
+ * <p>
+ * The mappers don't look up the subscribers, they receive the array of the listeners of their type, precomputed by
+ * {@link #get(ComponentType)}.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+final class ComponentListeners {
+	private static final IntComponentListener[] NONE = new IntComponentListener[0];
+
+	private IntComponentListener global;
+	private IntComponentListener[][] subscribers = new IntComponentListener[16][];
+
+	void setGlobal(IntComponentListener listener) {
+		this.global = listener;
+	}
+
+	/**
+	 * Adds a subscriber of the given type.
+	 *
+	 * @param type     type of the component.
+	 * @param listener a listener.
+	 * @throws NullPointerException if the listener is null.
+	 */
+	void add(ComponentType type, IntComponentListener listener) {
+		if (listener == null) {
+			throw new NullPointerException("listener can't be null");
+		}
+
+		int id = type.getId();
+		if (id >= this.subscribers.length) {
+			this.subscribers = Arrays.copyOf(this.subscribers, Math.max(this.subscribers.length << 1, id + 1));
+		}
+
+		IntComponentListener[] listeners = this.subscribers[id] == null ? NONE : this.subscribers[id];
+		listeners = Arrays.copyOf(listeners, listeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+
+		this.subscribers[id] = listeners;
+	}
+
+	/**
+	 * Removes a subscriber of the given type.
+	 *
+	 * @param type     type of the component.
+	 * @param listener a listener.
+	 * @return {@code true} if the listener was subscribed.
+	 */
+	boolean remove(ComponentType type, IntComponentListener listener) {
+		int id = type.getId();
+		if (id >= this.subscribers.length || this.subscribers[id] == null) {
+			return false;
+		}
+
+		IntComponentListener[] listeners = this.subscribers[id];
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				IntComponentListener[] remaining = new IntComponentListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, remaining, 0, i);
+				System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+
+				this.subscribers[id] = remaining.length == 0 ? null : remaining;
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the listeners of the given type, the global listener first.
+	 *
+	 * @param type type of the component.
+	 * @return the listeners, null if there is none.
+	 */
+	IntComponentListener[] get(ComponentType type) {
+		int id = type.getId();
+		IntComponentListener[] listeners = id < this.subscribers.length ? this.subscribers[id] : null;
+
+		if (this.global == null) {
+			return listeners;
+		}
+
+		if (listeners == null) {
+			return new IntComponentListener[]{this.global};
+		}
+
+		IntComponentListener[] all = new IntComponentListener[listeners.length + 1];
+		all[0] = this.global;
+		System.arraycopy(listeners, 0, all, 1, listeners.length);
+
+		return all;
+	}
+}
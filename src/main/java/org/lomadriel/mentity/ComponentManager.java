@@ -23,9 +23,15 @@ package org.lomadriel.mentity;
 
 import org.lomadriel.mentity.util.EventHandler;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,59 +42,220 @@ import java.util.Set;
  * @since 0.1
  */
 public class ComponentManager implements Serializable, Cloneable {
-	private static final long serialVersionUID = 1491726414158764138L;
+	private static final long serialVersionUID = 1601886090382996175L;
 
-	private final Map<Class<? extends Component>, ComponentMapper<? extends Component>> mappers = new HashMap<>();
+	private final List<ComponentMapper<? extends Component>> mappers = new ArrayList<>();
+	private transient ComponentMapper<?>[] mappersByType = new ComponentMapper<?>[16];
+	private final Map<Class<? extends Component>, ComponentStorage> storages = new HashMap<>();
+	private transient Map<Class<? extends Component>, ComponentPool<? extends Component>> pools;
+	private transient EntitySignatures signatures = new EntitySignatures();
+	private transient ChangeTracker changeTracker;
 
-	private transient EventHandler<ComponentEvent> onComponentAdded;
-	private transient EventHandler<ComponentEvent> onComponentRemoved;
+	private transient ComponentListeners onComponentAdded = new ComponentListeners();
+	private transient ComponentListeners onComponentRemoved = new ComponentListeners();
+	private transient ComponentBatchListener batchListener;
 
 	ComponentManager() {
 	}
 
 	void setOnComponentAdded(EventHandler<ComponentEvent> eventHandler) {
-		this.onComponentAdded = eventHandler;
+		setComponentAddedListener(eventHandler == null ? null : (entity, type) -> eventHandler.handleEvent(
+				new ComponentEvent(getMapper(type), ComponentEvent.Type.ADDED, type.getComponentClass(), entity)));
+	}
+
+	void setComponentAddedListener(IntComponentListener listener) {
+		this.onComponentAdded.setGlobal(listener);
+
+		for (ComponentMapper<? extends Component> componentMapper : this.mappers) {
+			componentMapper.setComponentAddedListeners(this.onComponentAdded.get(componentMapper.getType()));
+		}
+	}
+
+	/**
+	 * Subscribes the given listener to the additions of the components of the given type.
+	 *
+	 * @param type     type of the component.
+	 * @param listener a listener.
+	 * @throws NullPointerException if the listener is null.
+	 */
+	void addComponentAddedListener(ComponentType type, IntComponentListener listener) {
+		this.onComponentAdded.add(type, listener);
 
-		for (ComponentMapper<? extends Component> componentMapper : this.mappers.values()) {
-			componentMapper.setOnComponentAdded(eventHandler);
+		ComponentMapper<?> mapper = getMapper(type);
+		if (mapper != null) {
+			mapper.setComponentAddedListeners(this.onComponentAdded.get(type));
+		}
+	}
+
+	boolean removeComponentAddedListener(ComponentType type, IntComponentListener listener) {
+		boolean removed = this.onComponentAdded.remove(type, listener);
+
+		ComponentMapper<?> mapper = getMapper(type);
+		if (removed && mapper != null) {
+			mapper.setComponentAddedListeners(this.onComponentAdded.get(type));
+		}
+
+		return removed;
+	}
+
+	void setBatchListener(ComponentBatchListener listener) {
+		this.batchListener = listener;
+
+		for (ComponentMapper<? extends Component> componentMapper : this.mappers) {
+			componentMapper.setBatchListener(listener);
+		}
+	}
+
+	void setChangeTracker(ChangeTracker changeTracker) {
+		this.changeTracker = changeTracker;
+
+		for (ComponentMapper<? extends Component> componentMapper : this.mappers) {
+			componentMapper.setChangeTracker(changeTracker);
 		}
 	}
 
 	void setOnComponentRemoved(EventHandler<ComponentEvent> eventHandler) {
-		this.onComponentRemoved = eventHandler;
+		setComponentRemovedListener(eventHandler == null ? null : (entity, type) -> eventHandler.handleEvent(
+				new ComponentEvent(getMapper(type), ComponentEvent.Type.REMOVED, type.getComponentClass(), entity)));
+	}
+
+	void setComponentRemovedListener(IntComponentListener listener) {
+		this.onComponentRemoved.setGlobal(listener);
 
-		for (ComponentMapper<? extends Component> componentMapper : this.mappers.values()) {
-			componentMapper.setOnComponentRemoved(eventHandler);
+		for (ComponentMapper<? extends Component> componentMapper : this.mappers) {
+			componentMapper.setComponentRemovedListeners(this.onComponentRemoved.get(componentMapper.getType()));
 		}
 	}
 
 	/**
-	 * Returns the mapper associated with the components.
+	 * Subscribes the given listener to the removals of the components of the given type.
+	 *
+	 * @param type     type of the component.
+	 * @param listener a listener.
+	 * @throws NullPointerException if the listener is null.
+	 */
+	void addComponentRemovedListener(ComponentType type, IntComponentListener listener) {
+		this.onComponentRemoved.add(type, listener);
+
+		ComponentMapper<?> mapper = getMapper(type);
+		if (mapper != null) {
+			mapper.setComponentRemovedListeners(this.onComponentRemoved.get(type));
+		}
+	}
+
+	boolean removeComponentRemovedListener(ComponentType type, IntComponentListener listener) {
+		boolean removed = this.onComponentRemoved.remove(type, listener);
+
+		ComponentMapper<?> mapper = getMapper(type);
+		if (removed && mapper != null) {
+			mapper.setComponentRemovedListeners(this.onComponentRemoved.get(type));
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Sets the storage used by the mapper of the given component class.
+	 * Must be called before the creation of the mapper.
+	 *
+	 * @param componentClass class of the component.
+	 * @param storage        storage of the component.
+	 * @throws IllegalStateException if the mapper already exists with another storage.
+	 */
+	void setStorage(Class<? extends Component> componentClass, ComponentStorage storage) {
+		ComponentStorage previousStorage = this.storages.put(componentClass, storage);
+
+		if (previousStorage != storage && getMapper(ComponentType.of(componentClass)) != null) {
+			throw new IllegalStateException("The mapper of " + componentClass.getName() + " already exists");
+		}
+	}
+
+	/**
+	 * Sets the pool used by the mapper of the given component class.
+	 *
+	 * @param componentClass class of the component.
+	 * @param pool           pool of the component.
+	 * @param <T>            class of the component.
+	 */
+	<T extends Component> void setPool(Class<T> componentClass, ComponentPool<T> pool) {
+		if (this.pools == null) {
+			this.pools = new HashMap<>();
+		}
+
+		this.pools.put(componentClass, pool);
+
+		@SuppressWarnings("unchecked")
+		ComponentMapper<T> mapper = (ComponentMapper<T>) getMapper(ComponentType.of(componentClass));
+		if (mapper != null) {
+			mapper.setPool(pool);
+		}
+	}
+
+	/**
+	 * Returns the mapper associated with the components, creates it if needed.
 	 *
 	 * @param componentClass class of the component.
 	 * @param <T>            class of the component.
 	 * @return a mapper
 	 */
 	<T extends Component> ComponentMapper<T> getMapper(Class<T> componentClass) {
+		ComponentType type = ComponentType.of(componentClass);
+
 		@SuppressWarnings("unchecked")
-		ComponentMapper<T> mapper = (ComponentMapper<T>) this.mappers.get(componentClass);
+		ComponentMapper<T> mapper = (ComponentMapper<T>) getMapper(type);
 		if (mapper == null) {
-			mapper = new ComponentMapper<>(componentClass);
-			mapper.setOnComponentAdded(this.onComponentAdded);
-			mapper.setOnComponentRemoved(this.onComponentRemoved);
-			this.mappers.put(componentClass, mapper);
+			mapper = this.storages.getOrDefault(componentClass, ComponentStorage.defaultOf(componentClass))
+					.createMapper(componentClass);
+			mapper.setComponentAddedListeners(this.onComponentAdded.get(type));
+			mapper.setComponentRemovedListeners(this.onComponentRemoved.get(type));
+			mapper.setBatchListener(this.batchListener);
+			mapper.setSignatures(this.signatures);
+			mapper.setChangeTracker(this.changeTracker);
+
+			if (this.pools != null) {
+				@SuppressWarnings("unchecked")
+				ComponentPool<T> pool = (ComponentPool<T>) this.pools.get(componentClass);
+				mapper.setPool(pool);
+			}
+
+			this.mappers.add(mapper);
+			index(mapper);
 		}
 
 		return mapper;
 	}
 
+	/**
+	 * Returns the mapper of the given type if it exists.
+	 * Doesn't create the mapper, and doesn't allocate.
+	 *
+	 * @param type type of the component.
+	 * @return the mapper, null if no component of this type has been used yet.
+	 */
+	ComponentMapper<?> getMapper(ComponentType type) {
+		int id = type.getId();
+
+		return id < this.mappersByType.length ? this.mappersByType[id] : null;
+	}
+
+	/**
+	 * Returns the types of the components of the given entity.
+	 * A component is part of the signature until its removal is flushed.
+	 *
+	 * @param entity an entity.
+	 * @return the ids of the component types, must not be modified.
+	 */
+	BitSet getSignature(int entity) {
+		return this.signatures.get(entity);
+	}
+
 	/**
 	 * Returns the mappers.
 	 *
 	 * @return the mappers.
 	 */
 	Set<ComponentMapper<? extends Component>> getMappers() {
-		return new HashSet<>(this.mappers.values());
+		return new HashSet<>(this.mappers);
 	}
 
 	/**
@@ -117,7 +284,20 @@ public class ComponentManager implements Serializable, Cloneable {
 	 * @return {@code true} if the given {@code entity} has the given component.
 	 */
 	public <T extends Component> boolean hasComponent(int entity, Class<T> componentClass) {
-		return getMapper(componentClass).hasComponent(entity);
+		return hasComponent(entity, ComponentType.of(componentClass));
+	}
+
+	/**
+	 * Returns {@code true} if the given {@code entity} has a component of the given type.
+	 *
+	 * @param entity an entity
+	 * @param type   component's type
+	 * @return {@code true} if the given {@code entity} has a component of the given type.
+	 */
+	public boolean hasComponent(int entity, ComponentType type) {
+		ComponentMapper<?> mapper = getMapper(type);
+
+		return mapper != null && mapper.hasComponent(entity);
 	}
 
 	/**
@@ -129,7 +309,9 @@ public class ComponentManager implements Serializable, Cloneable {
 	 * @return true if the given entity has the component and the component isn't marked for deletion, false otherwise.
 	 */
 	public <T extends Component> boolean hasComponentAndWillKeepIt(int entity, Class<T> componentClass) {
-		return getMapper(componentClass).hasComponentAndWillKeepIt(entity);
+		ComponentMapper<?> mapper = getMapper(ComponentType.of(componentClass));
+
+		return mapper != null && mapper.hasComponentAndWillKeepIt(entity);
 	}
 
 	/**
@@ -155,27 +337,86 @@ public class ComponentManager implements Serializable, Cloneable {
 	 * @param entity an existing entity
 	 */
 	void removeComponents(int entity) {
-		for (Class<? extends Component> componentClass : this.mappers.keySet()) {
-			ComponentMapper<?> mapper = getMapper(componentClass);
-			if (mapper.hasComponent(entity)) {
-				mapper.removeComponent(entity);
-			}
+		BitSet signature = this.signatures.get(entity);
+
+		for (int type = signature.nextSetBit(0); type != -1; type = signature.nextSetBit(type + 1)) {
+			this.mappersByType[type].removeComponent(entity);
 		}
 	}
 
+	/**
+	 * Removes all the components of the given {@code entities}.
+	 * Components are removed at the end of the iteration, events are delivered mapper by mapper.
+	 *
+	 * @param entities existing entities
+	 */
+	void removeComponents(BitSet entities) {
+		BitSet types = new BitSet();
+		this.signatures.union(entities, types);
+
+		for (int type = types.nextSetBit(0); type != -1; type = types.nextSetBit(type + 1)) {
+			this.mappersByType[type].removeComponents(entities);
+		}
+
+		fireEvents();
+	}
+
 	/**
 	 * Removes all the components.
 	 */
 	void reset() {
+		this.mappers.forEach(ComponentMapper::dispose);
 		this.mappers.clear();
+		Arrays.fill(this.mappersByType, null);
+		this.signatures.clear();
 	}
 
 	void fireEvents() {
-		this.mappers.values().forEach(ComponentMapper::fireEvents);
+		for (ComponentMapper<? extends Component> mapper : this.mappers) {
+			mapper.fireEvents();
+		}
 	}
 
 	void flush() {
-		this.mappers.values().forEach(ComponentMapper::flush);
+		for (ComponentMapper<? extends Component> mapper : this.mappers) {
+			mapper.flush();
+		}
+	}
+
+	void fireBatches() {
+		if (this.batchListener == null) {
+			return;
+		}
+
+		for (ComponentMapper<? extends Component> mapper : this.mappers) {
+			mapper.fireBatch();
+		}
+	}
+
+	private void index(ComponentMapper<?> mapper) {
+		int id = mapper.getType().getId();
+
+		if (id >= this.mappersByType.length) {
+			this.mappersByType = Arrays.copyOf(this.mappersByType, Math.max(this.mappersByType.length << 1, id + 1));
+		}
+
+		this.mappersByType[id] = mapper;
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+
+		// Type ids depend on the registration order of the current JVM.
+		this.mappersByType = new ComponentMapper<?>[Math.max(16, ComponentType.count())];
+		this.signatures = new EntitySignatures();
+		this.onComponentAdded = new ComponentListeners();
+		this.onComponentRemoved = new ComponentListeners();
+
+		for (ComponentMapper<? extends Component> mapper : this.mappers) {
+			index(mapper);
+			mapper.setSignatures(this.signatures);
+			this.signatures.add(mapper.getEntitiesWithComponent(), mapper.getType().getId());
+		}
 	}
 
 	@Override
@@ -21,16 +21,13 @@
 
 package org.lomadriel.mentity;
 
-import org.lomadriel.lfc.event.EventDispatcher;
-import org.lomadriel.mentity.util.Bag;
-import org.lomadriel.mentity.util.EventHandler;
+import org.lomadriel.mentity.util.IntBag;
+import org.lomadriel.mentity.util.PagedBag;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayDeque;
 import java.util.BitSet;
-import java.util.Queue;
 
 /**
  * Class used to manage the components.
@@ -40,27 +37,53 @@ import java.util.Queue;
  * @since 0.1
  */
 public class ComponentMapper<T extends Component> implements Serializable {
-	private static final long serialVersionUID = 494271719946187185L;
-	private static final EventHandler<ComponentEvent> DEFAULT_EVENT_HANDLER = event -> {
-	};
+	private static final long serialVersionUID = 3357944760346537546L;
 
 	private final Class<T> componentClass;
-	private final Bag<T> components;
+	private final transient ComponentType type;
+	private final PagedBag<T> components;
 	private final transient BitSet componentsBitSet = new BitSet(); // No need to serialize this.
 	private final transient BitSet removeQueue = new BitSet();
 
-	private transient EventHandler<ComponentEvent> onComponentAdded = DEFAULT_EVENT_HANDLER;
-	private transient EventHandler<ComponentEvent> onComponentRemoved = DEFAULT_EVENT_HANDLER;
-	private final transient Queue<Integer> componentAddedEvent = new ArrayDeque<>();
-	private final transient Queue<Integer> componentRemovedEvent = new ArrayDeque<>();
+	/**
+	 * Listeners, null when there is none so no event is built nor delayed.
+	 */
+	private transient IntComponentListener[] onComponentAdded;
+	private transient IntComponentListener[] onComponentRemoved;
+	private transient EntitySignatures signatures;
+	private transient ChangeTracker changeTracker;
+	private final transient IntBag componentAddedEvent = new IntBag();
+	private final transient IntBag componentRemovedEvent = new IntBag();
+	private transient ComponentBatchListener batchListener;
+	private transient ChangeSet changes;
+
+	private transient ComponentPool<T> pool;
+
+	/**
+	 * Incremented each time a component is added or removed.
+	 */
+	private transient long version;
 
 	ComponentMapper(Class<T> componentClass) {
+		this(componentClass, new PagedBag<>());
+	}
+
+	/**
+	 * Constructs a mapper storing its components in the given bag.
+	 * Mappers overriding the storage hooks use a null bag.
+	 *
+	 * @param componentClass class of the component.
+	 * @param components     bag of the components, may be null.
+	 */
+	ComponentMapper(Class<T> componentClass, PagedBag<T> components) {
 		this.componentClass = componentClass;
-		this.components = new Bag<>();
+		this.type = ComponentType.of(componentClass);
+		this.components = components;
 	}
 
 	private ComponentMapper(ComponentMapper<T> copy) {
 		this.componentClass = copy.componentClass;
+		this.type = ComponentType.of(this.componentClass);
 		this.components = copy.components;
 
 		for (int i = 0; i < this.components.size(); i++) {
@@ -70,20 +93,69 @@ public class ComponentMapper<T extends Component> implements Serializable {
 		}
 	}
 
-	void setOnComponentAdded(EventHandler<ComponentEvent> eventHandler) {
-		if (eventHandler == null) {
-			this.onComponentAdded = DEFAULT_EVENT_HANDLER;
-		} else {
-			this.onComponentAdded = eventHandler;
+	void setComponentAddedListeners(IntComponentListener[] listeners) {
+		this.onComponentAdded = listeners;
+	}
+
+	void setComponentRemovedListeners(IntComponentListener[] listeners) {
+		this.onComponentRemoved = listeners;
+	}
+
+	void setBatchListener(ComponentBatchListener listener) {
+		this.batchListener = listener;
+
+		if (listener == null) {
+			this.changes = null;
+		} else if (this.changes == null) {
+			this.changes = new ChangeSet();
 		}
 	}
 
-	void setOnComponentRemoved(EventHandler<ComponentEvent> eventHandler) {
-		if (eventHandler == null) {
-			this.onComponentRemoved = DEFAULT_EVENT_HANDLER;
+	void setSignatures(EntitySignatures signatures) {
+		this.signatures = signatures;
+	}
+
+	void setChangeTracker(ChangeTracker changeTracker) {
+		this.changeTracker = changeTracker;
+	}
+
+	void setPool(ComponentPool<T> pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the pool of this mapper.
+	 *
+	 * @return the pool of this mapper, null if the components aren't pooled.
+	 */
+	public ComponentPool<T> getPool() {
+		return this.pool;
+	}
+
+	/**
+	 * Adds a new component to the given entity.
+	 * The component is taken from the pool if there is one, otherwise it's constructed using its no-arg constructor.
+	 *
+	 * @param entity an existing entity.
+	 * @return the new component.
+	 * @throws IllegalStateException if there is no pool and the component can't be constructed.
+	 */
+	public T create(int entity) {
+		T component;
+
+		if (this.pool == null) {
+			try {
+				component = this.componentClass.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(this.componentClass.getName() + " can't be instantiated", e);
+			}
 		} else {
-			this.onComponentRemoved = eventHandler;
+			component = this.pool.obtain();
 		}
+
+		addComponent(entity, component);
+
+		return component;
 	}
 
 	/**
@@ -100,24 +172,90 @@ public class ComponentMapper<T extends Component> implements Serializable {
 	void addComponent(int entity, Component component, boolean delayEvent) {
 		assert (entity >= 0);
 
-		EventDispatcher.getInstance().fire(new InternalEvent(entity));
+		modified(entity);
 
 		if (component == null) {
 			throw new NullPointerException("Component can't be null");
 		}
 
-		component.entity = entity;
+		store(entity, (T) component);
+		added(entity, delayEvent);
+	}
+
+	/**
+	 * Marks the given entity as modified in the world owning this mapper.
+	 *
+	 * @param entity an entity.
+	 * @throws IllegalArgumentException if the entity doesn't exist in the world.
+	 */
+	final void modified(int entity) {
+		if (this.changeTracker != null) {
+			this.changeTracker.modified(entity);
+		}
+	}
+
+	/**
+	 * Marks the given entities as modified in the world owning this mapper.
+	 *
+	 * @param entities entities.
+	 * @throws IllegalArgumentException if one of the entities doesn't exist in the world.
+	 */
+	final void modified(BitSet entities) {
+		if (this.changeTracker != null) {
+			this.changeTracker.modified(entities);
+		}
+	}
+
+	/**
+	 * Marks the given entity as owner of the component once the component has been stored.
+	 *
+	 * @param entity     an existing entity.
+	 * @param delayEvent {@code true} to delay the event until {@link #fireEvents()}.
+	 */
+	void added(int entity, boolean delayEvent) {
+		if (this.changes != null) {
+			this.changes.touch(entity, this.componentsBitSet);
+		}
 
-		this.components.set(entity, (T) component);
 		this.componentsBitSet.set(entity);
+		this.version++;
+
+		if (this.signatures != null) {
+			this.signatures.add(entity, this.type.getId());
+		}
+
+		if (this.onComponentAdded == null) {
+			return;
+		}
 
 		if (delayEvent) {
-			this.componentAddedEvent.offer(entity);
+			this.componentAddedEvent.add(entity);
 		} else {
-			this.onComponentAdded.handleEvent(new ComponentEvent(this,
-					ComponentEvent.Type.ADDED,
-					this.componentClass,
-					entity));
+			fire(this.onComponentAdded, entity);
+		}
+	}
+
+	/**
+	 * Marks all the given entities as owners of the component.
+	 *
+	 * @param entities existing entities.
+	 */
+	void added(BitSet entities) {
+		if (this.changes != null) {
+			this.changes.touch(entities, this.componentsBitSet);
+		}
+
+		this.componentsBitSet.or(entities);
+		this.version++;
+
+		if (this.signatures != null) {
+			this.signatures.add(entities, this.type.getId());
+		}
+
+		if (this.onComponentAdded != null) {
+			for (int i = entities.nextSetBit(0); i != -1; i = entities.nextSetBit(i + 1)) {
+				fire(this.onComponentAdded, i);
+			}
 		}
 	}
 
@@ -157,7 +295,7 @@ public class ComponentMapper<T extends Component> implements Serializable {
 			System.out.println("Useless call to getComponent(int entity)");
 		}
 
-		return this.components.get(entity);
+		return load(entity);
 	}
 
 	/**
@@ -173,17 +311,50 @@ public class ComponentMapper<T extends Component> implements Serializable {
 	void removeComponent(int entity, boolean delayEvent) {
 		assert (entity >= 0);
 
-		EventDispatcher.getInstance().fire(new InternalEvent(entity));
+		modified(entity);
 
 		this.removeQueue.set(entity);
+		this.version++;
+
+		if (this.changes != null) {
+			this.changes.touch(entity, this.componentsBitSet);
+		}
+
+		if (this.onComponentRemoved == null) {
+			return;
+		}
 
 		if (delayEvent) {
-			this.componentRemovedEvent.offer(entity);
+			this.componentRemovedEvent.add(entity);
 		} else {
-			this.onComponentRemoved.handleEvent(new ComponentEvent(this,
-					ComponentEvent.Type.REMOVED,
-					this.componentClass,
-					entity));
+			fire(this.onComponentRemoved, entity);
+		}
+	}
+
+	/**
+	 * Removes the component T of all the given entities which have it.
+	 * Components are removed at the end of the iteration, events are delayed until {@link #fireEvents()}.
+	 *
+	 * @param entities existing entities.
+	 */
+	void removeComponents(BitSet entities) {
+		BitSet removed = (BitSet) this.componentsBitSet.clone();
+		removed.and(entities);
+
+		this.removeQueue.or(removed);
+
+		if (!removed.isEmpty()) {
+			this.version++;
+		}
+
+		if (this.changes != null) {
+			this.changes.touch(removed, this.componentsBitSet);
+		}
+
+		if (this.onComponentRemoved != null) {
+			for (int i = removed.nextSetBit(0); i != -1; i = removed.nextSetBit(i + 1)) {
+				this.componentRemovedEvent.add(i);
+			}
 		}
 	}
 
@@ -200,36 +371,136 @@ public class ComponentMapper<T extends Component> implements Serializable {
 		return this.componentClass;
 	}
 
+	/**
+	 * Returns the modification version of this mapper, incremented each time a component is added or removed.
+	 * Two equal versions mean that the entities with the component didn't change in between.
+	 *
+	 * @return the modification version.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Returns the type of the components of this mapper.
+	 *
+	 * @return the type of the components.
+	 */
+	public ComponentType getType() {
+		return this.type;
+	}
+
+	Class<T> getComponentClass() {
+		return this.componentClass;
+	}
+
 	/**
 	 * Fires delayed event.
 	 */
 	void fireEvents() {
-		while (!this.componentAddedEvent.isEmpty()) {
-			int entity = this.componentAddedEvent.poll().intValue();
-			this.onComponentAdded.handleEvent(new ComponentEvent(this,
-					ComponentEvent.Type.ADDED,
-					this.componentClass,
-					entity));
+		fireEvents(this.componentAddedEvent, this.onComponentAdded);
+		fireEvents(this.componentRemovedEvent, this.onComponentRemoved);
+	}
+
+	private void fireEvents(IntBag entities, IntComponentListener[] listeners) {
+		// Delivered in order, the listeners may have been removed since the events were delayed.
+		if (listeners != null) {
+			for (int i = 0; i < entities.size(); i++) {
+				fire(listeners, entities.get(i));
+			}
 		}
 
-		while (!this.componentRemovedEvent.isEmpty()) {
-			int entity = this.componentRemovedEvent.poll().intValue();
-			this.onComponentRemoved.handleEvent(new ComponentEvent(this,
-					ComponentEvent.Type.REMOVED,
-					this.componentClass,
-					entity));
+		entities.clear();
+	}
+
+	private void fire(IntComponentListener[] listeners, int entity) {
+		for (IntComponentListener listener : listeners) {
+			listener.onComponent(entity, this.type);
+		}
+	}
+
+	/**
+	 * Delivers the net changes since the last call to the batch listener, if there is one.
+	 * Called once the mapper has been flushed.
+	 */
+	void fireBatch() {
+		if (this.changes != null && !this.changes.isEmpty()) {
+			if (this.changes.compute(this.componentsBitSet)) {
+				this.batchListener.onComponentsChanged(this.type, this.changes.getAdded(), this.changes.getRemoved());
+			}
+
+			this.changes.clear();
 		}
 	}
 
 	void flush() {
-		this.componentsBitSet.andNot(this.removeQueue);
 		for (int i = this.removeQueue.nextSetBit(0); i != -1; i = this.removeQueue.nextSetBit(i + 1)) {
-			this.components.set(i, null);
+			if (this.componentsBitSet.get(i)) {
+				release(i);
+
+				if (this.signatures != null) {
+					this.signatures.remove(i, this.type.getId());
+				}
+			}
 		}
 
+		this.componentsBitSet.andNot(this.removeQueue);
 		this.removeQueue.clear();
 	}
 
+	/**
+	 * Stores the component of the given entity.
+	 * Storage hook, overridden by the mappers which don't keep the component instances.
+	 *
+	 * @param entity    an existing entity.
+	 * @param component component of the entity.
+	 */
+	void store(int entity, T component) {
+		component.entity = entity;
+		this.components.set(entity, component);
+	}
+
+	/**
+	 * Returns the stored component of the given entity.
+	 *
+	 * @param entity an entity.
+	 * @return the component of the entity, null if there is none.
+	 */
+	T load(int entity) {
+		return this.components.get(entity);
+	}
+
+	/**
+	 * Releases the component of the given entity, called when the removal is flushed.
+	 *
+	 * @param entity an entity.
+	 */
+	void release(int entity) {
+		recycle(this.components.get(entity));
+		this.components.set(entity, null);
+	}
+
+	/**
+	 * Gives the given removed component back to the pool, if there is one.
+	 *
+	 * @param component a removed component.
+	 */
+	final void recycle(T component) {
+		if (this.pool != null && component != null) {
+			this.pool.free(component);
+		}
+	}
+
+	/**
+	 * Releases all the resources held by this mapper, called when the world is reset.
+	 */
+	void dispose() {
+		// The subclasses storing the components themselves have no bag.
+		if (this.components != null) {
+			this.components.clear();
+		}
+	}
+
 	private Object readResolve() {
 		return new ComponentMapper<>(this);
 	}
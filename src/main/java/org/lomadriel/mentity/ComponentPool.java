@@ -0,0 +1,134 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+/**
+ * Pool of components.
+ * <p>
+ * When a pool is set for a component class, the components removed at the end of an iteration are reset with
+ * {@link Component#reset()} and kept in the pool, then handed back by {@link ComponentMapper#create(int)}.
+ * A removed component must not be used anymore once the iteration is over.
+ *
+ * @param <T> component's class.
+ * @author Jérôme BOULMIER
+ * @see WorldBuilder#setPool(Class, ComponentPool)
+ * @since 1.4
+ */
+public final class ComponentPool<T extends Component> {
+	private final Supplier<T> factory;
+	private final int maxSize;
+	private final Deque<T> components = new ArrayDeque<>();
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Constructs a new unbounded pool.
+	 *
+	 * @param factory factory used when the pool is empty.
+	 */
+	public ComponentPool(Supplier<T> factory) {
+		this(factory, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs a new pool keeping at most {@code maxSize} components.
+	 *
+	 * @param factory factory used when the pool is empty.
+	 * @param maxSize maximum number of components kept by the pool.
+	 * @throws NullPointerException     if the factory is null.
+	 * @throws IllegalArgumentException if maxSize is negative.
+	 */
+	public ComponentPool(Supplier<T> factory, int maxSize) {
+		if (factory == null) {
+			throw new NullPointerException("factory can't be null");
+		}
+
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("maxSize can't be negative");
+		}
+
+		this.factory = factory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns a component of the pool, or a new component if the pool is empty.
+	 *
+	 * @return a component.
+	 */
+	public T obtain() {
+		T component = this.components.pollLast();
+
+		if (component == null) {
+			++this.misses;
+			return this.factory.get();
+		}
+
+		++this.hits;
+		return component;
+	}
+
+	/**
+	 * Resets the given component and gives it back to the pool.
+	 *
+	 * @param component a component which isn't used anymore.
+	 */
+	public void free(T component) {
+		component.reset();
+
+		if (this.components.size() < this.maxSize) {
+			this.components.addLast(component);
+		}
+	}
+
+	/**
+	 * Returns the number of components available in the pool.
+	 *
+	 * @return the number of components available.
+	 */
+	public int size() {
+		return this.components.size();
+	}
+
+	/**
+	 * Returns the number of components obtained from the pool.
+	 *
+	 * @return the number of hits.
+	 */
+	public long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of components created because the pool was empty.
+	 *
+	 * @return the number of misses.
+	 */
+	public long getMisses() {
+		return this.misses;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+/**
+ * Storage used by the mapper of a component class.
+ *
+ * @author Jérôme BOULMIER
+ * @see WorldBuilder#setStorage(Class, ComponentStorage)
+ * @since 1.4
+ */
+public enum ComponentStorage {
+	/**
+	 * Components are stored as objects in a {@code Bag} indexed by entity.
+	 */
+	DEFAULT {
+		@Override
+		<T extends Component> ComponentMapper<T> createMapper(Class<T> componentClass) {
+			return new ComponentMapper<>(componentClass);
+		}
+	},
+
+	/**
+	 * Each primitive field of the component is stored in its own array indexed by entity.
+	 *
+	 * @see PackedComponentMapper
+	 */
+	PACKED {
+		@Override
+		<T extends Component> ComponentMapper<T> createMapper(Class<T> componentClass) {
+			return new PackedComponentMapper<>(componentClass);
+		}
+	},
+
+	/**
+	 * Components are stored as fixed-size records in direct memory, outside of the heap.
+	 *
+	 * @see OffHeapComponentMapper
+	 */
+	OFF_HEAP {
+		@Override
+		<T extends Component> ComponentMapper<T> createMapper(Class<T> componentClass) {
+			return new OffHeapComponentMapper<>(componentClass);
+		}
+	},
+
+	/**
+	 * Components are stored in a dense array indexed through a sparse table.
+	 *
+	 * @see SparseComponentMapper
+	 */
+	SPARSE {
+		@Override
+		<T extends Component> ComponentMapper<T> createMapper(Class<T> componentClass) {
+			return new SparseComponentMapper<>(componentClass);
+		}
+	},
+
+	/**
+	 * Only the set of entities owning the component is stored, the component must not have any field.
+	 * Default storage of the {@link Tag}s.
+	 *
+	 * @see TagMapper
+	 */
+	TAG {
+		@Override
+		<T extends Component> ComponentMapper<T> createMapper(Class<T> componentClass) {
+			return new TagMapper<>(componentClass);
+		}
+	},
+
+	/**
+	 * Equal components are stored once and shared by the entities.
+	 *
+	 * @see SharedComponentMapper
+	 */
+	SHARED {
+		@Override
+		<T extends Component> ComponentMapper<T> createMapper(Class<T> componentClass) {
+			return new SharedComponentMapper<>(componentClass);
+		}
+	};
+
+	/**
+	 * Returns the default storage of the given component class.
+	 *
+	 * @param componentClass class of the component.
+	 * @return {@link #TAG} for a {@link Tag}, {@link #DEFAULT} otherwise.
+	 */
+	static ComponentStorage defaultOf(Class<? extends Component> componentClass) {
+		return Tag.class.isAssignableFrom(componentClass) ? TAG : DEFAULT;
+	}
+
+	/**
+	 * Creates a mapper using this storage.
+	 *
+	 * @param componentClass class of the component.
+	 * @param <T>            class of the component.
+	 * @return a new mapper.
+	 */
+	abstract <T extends Component> ComponentMapper<T> createMapper(Class<T> componentClass);
+}
@@ -0,0 +1,130 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Type of a component.
+ * <p>
+ * Each component class is registered once, the first time its type is requested, and receives a dense id.
+ * Ids are used to index the mappers of a world, so a type can be used instead of its class to avoid any lookup.
+ * The type is kept by its class, registering a class doesn't prevent it from being unloaded.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+public final class ComponentType {
+	private static final Object LOCK = new Object();
+
+	/**
+	 * Registered types indexed by id, weakly referenced so the classes can be unloaded.
+	 */
+	@SuppressWarnings("unchecked")
+	private static volatile WeakReference<ComponentType>[] byId = new WeakReference[0];
+
+	private static final ClassValue<ComponentType> TYPES = new ClassValue<ComponentType>() {
+		@Override
+		protected ComponentType computeValue(Class<?> type) {
+			synchronized (LOCK) {
+				// computeValue may be called several times for the same class, only the first call gets a new id.
+				for (WeakReference<ComponentType> reference : byId) {
+					ComponentType componentType = reference.get();
+					if (componentType != null && componentType.componentClass == type) {
+						return componentType;
+					}
+				}
+
+				ComponentType componentType = new ComponentType(type.asSubclass(Component.class), byId.length);
+
+				WeakReference<ComponentType>[] types = Arrays.copyOf(byId, componentType.id + 1);
+				types[componentType.id] = new WeakReference<>(componentType);
+				byId = types;
+
+				return componentType;
+			}
+		}
+	};
+
+	private final Class<? extends Component> componentClass;
+	private final int id;
+
+	private ComponentType(Class<? extends Component> componentClass, int id) {
+		this.componentClass = componentClass;
+		this.id = id;
+	}
+
+	/**
+	 * Returns the type of the given component class, registers it if needed.
+	 *
+	 * @param componentClass component's class
+	 * @return the type of the component.
+	 * @throws ClassCastException if the class isn't a component.
+	 */
+	public static ComponentType of(Class<? extends Component> componentClass) {
+		return TYPES.get(componentClass);
+	}
+
+	/**
+	 * Returns the registered type of the given id.
+	 *
+	 * @param id id of a registered type.
+	 * @return the type, null if its class has been unloaded.
+	 * @throws ArrayIndexOutOfBoundsException if no type has this id.
+	 */
+	static ComponentType get(int id) {
+		return byId[id].get();
+	}
+
+	/**
+	 * Returns the number of registered types.
+	 *
+	 * @return the number of registered types.
+	 */
+	static int count() {
+		return byId.length;
+	}
+
+	/**
+	 * Returns the id of this type.
+	 *
+	 * @return the id of this type.
+	 */
+	public int getId() {
+		return this.id;
+	}
+
+	/**
+	 * Returns the class of the component.
+	 *
+	 * @return the class of the component.
+	 */
+	public Class<? extends Component> getComponentClass() {
+		return this.componentClass;
+	}
+
+	@Override
+	public String toString() {
+		return "ComponentType(" + this.componentClass.getName() + ", " + this.id + ')';
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+/**
+ * Helpers to manipulate entity handles.
+ * <p>
+ * An entity handle packs the id of an entity and the generation of its slot in a {@code long}.
+ * The generation of a slot is incremented each time the entity occupying it is destroyed,
+ * so a handle kept across several updates can be checked with {@link World#isAlive(long)}
+ * before being used, even if its id has been reused by a new entity.
+ *
+ * @author Jérôme BOULMIER
+ * @see World#getHandle(int)
+ * @since 1.4
+ */
+public final class EntityHandle {
+	private EntityHandle() {
+	}
+
+	/**
+	 * Packs the given {@code entity} and {@code generation} into a handle.
+	 *
+	 * @param entity     an entity.
+	 * @param generation generation of the entity.
+	 * @return the handle.
+	 */
+	public static long of(int entity, int generation) {
+		return ((long) generation << 32) | (entity & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the entity of the given {@code handle}.
+	 *
+	 * @param handle an entity handle.
+	 * @return the entity.
+	 */
+	public static int entity(long handle) {
+		return (int) handle;
+	}
+
+	/**
+	 * Returns the generation of the given {@code handle}.
+	 *
+	 * @param handle an entity handle.
+	 * @return the generation.
+	 */
+	public static int generation(long handle) {
+		return (int) (handle >>> 32);
+	}
+}
@@ -22,6 +22,7 @@
 package org.lomadriel.mentity;
 
 import org.lomadriel.mentity.util.EventHandler;
+import org.lomadriel.mentity.util.IntBag;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -37,36 +38,60 @@ import java.util.BitSet;
  */
 class EntityManager implements Serializable, Cloneable {
 	private static final long serialVersionUID = 2007045073473283304L;
-	private static final EventHandler<EntityEvent> DEFAULT_EVENT_HANDLER = event -> {
-	};
 
 	private final BitSet entities;
+	private final IntBag generations;
 	private final transient BitSet removeQueue = new BitSet();
 
+	/**
+	 * Ids released by {@link #flush()}, the lowest id of the last flush is on top of the stack.
+	 */
+	private final transient IntBag freeEntities = new IntBag();
 	private transient int nextIndex;
-	private transient int tempNextIndex = Integer.MAX_VALUE;
 
-	private transient EventHandler<EntityEvent> onEntityCreated = DEFAULT_EVENT_HANDLER;
-	private transient EventHandler<EntityEvent> onEntityRemoved = DEFAULT_EVENT_HANDLER;
+	/**
+	 * Incremented each time entities are created or destroyed.
+	 */
+	private transient long version;
+
+	/**
+	 * Listeners, null when there is none so no event is built.
+	 */
+	private transient IntEntityListener onEntityCreated;
+	private transient IntEntityListener onEntityRemoved;
 
 	EntityManager() {
 		this.entities = new BitSet();
+		this.generations = new IntBag();
 	}
 
 	private EntityManager(EntityManager copy) {
 		this.entities = copy.entities;
+		// Saves made before the handles were added have no generations, every entity is at its first one.
+		this.generations = copy.generations == null ? new IntBag() : copy.generations;
+		this.nextIndex = this.entities.length();
+
+		for (int i = this.entities.previousClearBit(this.nextIndex - 1); i >= 0; i = this.entities.previousClearBit(i - 1)) {
+			this.freeEntities.add(i);
+		}
 	}
 
 	void setOnEntityCreated(EventHandler<EntityEvent> eventHandler) {
-		if (this.onEntityCreated == null) {
-			this.onEntityCreated = DEFAULT_EVENT_HANDLER;
-		} else {
-			this.onEntityCreated = eventHandler;
-		}
+		setEntityCreatedListener(eventHandler == null ? null
+				: entity -> eventHandler.handleEvent(new EntityEvent(EntityEvent.Type.CREATED, entity)));
+	}
+
+	void setEntityCreatedListener(IntEntityListener listener) {
+		this.onEntityCreated = listener;
 	}
 
 	void setOnEntityRemoved(EventHandler<EntityEvent> eventHandler) {
-		this.onEntityRemoved = eventHandler;
+		setEntityRemovedListener(eventHandler == null ? null
+				: entity -> eventHandler.handleEvent(new EntityEvent(EntityEvent.Type.DESTROYED, entity)));
+	}
+
+	void setEntityRemovedListener(IntEntityListener listener) {
+		this.onEntityRemoved = listener;
 	}
 
 	/**
@@ -75,18 +100,58 @@ class EntityManager implements Serializable, Cloneable {
 	 * @return the new entity.
 	 */
 	int createEntity() {
-		int entity = this.entities.nextClearBit(0);
+		int entity;
+		if (this.freeEntities.isEmpty()) {
+			entity = this.nextIndex++;
+		} else {
+			entity = this.freeEntities.pop();
+		}
+
 		this.entities.set(entity);
+		this.version++;
 
 		if (this.onEntityCreated != null) {
-			this.onEntityCreated.handleEvent(new EntityEvent(EntityEvent.Type.CREATED, entity));
+			this.onEntityCreated.onEntity(entity);
 		}
 
-		this.nextIndex = entity + 1;
-
 		return entity;
 	}
 
+	/**
+	 * Creates {@code count} new entities.
+	 * Ids are taken from the free list first, the remaining ones are reserved as a single range.
+	 *
+	 * @param count number of entities to create.
+	 * @return the new entities.
+	 */
+	int[] createEntities(int count) {
+		int[] created = new int[count];
+		this.version++;
+
+		int i = 0;
+		while (i < count && !this.freeEntities.isEmpty()) {
+			int entity = this.freeEntities.pop();
+			this.entities.set(entity);
+			created[i++] = entity;
+		}
+
+		if (i < count) {
+			this.entities.set(this.nextIndex, this.nextIndex + count - i);
+
+			while (i < count) {
+				created[i++] = this.nextIndex++;
+			}
+		}
+
+		if (this.onEntityCreated != null) {
+			for (int entity : created) {
+				this.onEntityCreated.onEntity(entity);
+			}
+		}
+
+		return created;
+	}
+
 	/**
 	 * Checks the existence of an entity
 	 *
@@ -94,7 +159,61 @@ class EntityManager implements Serializable, Cloneable {
 	 * @return {@code true} if the entity exists, {@code false} otherwise.
 	 */
 	boolean entityExists(int entity) {
-		return this.entities.get(entity);
+		return entity >= 0 && this.entities.get(entity);
+	}
+
+	/**
+	 * Checks the existence of several entities.
+	 *
+	 * @param entities entities to check the existence
+	 * @return {@code true} if all the entities exist, {@code false} otherwise.
+	 */
+	boolean entitiesExist(BitSet entities) {
+		BitSet unknownEntities = (BitSet) entities.clone();
+		unknownEntities.andNot(this.entities);
+
+		return unknownEntities.isEmpty();
+	}
+
+	/**
+	 * Checks whether the given {@code entity} has been destroyed since the last flush.
+	 *
+	 * @param entity an existing entity.
+	 * @return {@code true} if the entity is waiting for its removal, {@code false} otherwise.
+	 */
+	boolean isDestroyed(int entity) {
+		return this.removeQueue.get(entity);
+	}
+
+	/**
+	 * Removes from the given set the entities destroyed since the last flush.
+	 *
+	 * @param entities a set of entities.
+	 */
+	void removeDestroyed(BitSet entities) {
+		entities.andNot(this.removeQueue);
+	}
+
+	/**
+	 * Returns the current generation of the slot of the given {@code entity}.
+	 *
+	 * @param entity an entity.
+	 * @return the generation of the entity.
+	 */
+	int getGeneration(int entity) {
+		return this.generations.get(entity);
+	}
+
+	/**
+	 * Checks that the given {@code handle} still designates the entity it was created for.
+	 *
+	 * @param handle an entity handle.
+	 * @return {@code true} if the entity of the handle hasn't been destroyed, {@code false} otherwise.
+	 * @see EntityHandle
+	 */
+	boolean isAlive(long handle) {
+		// The generation is bumped on destruction and on reset, no need to check the entity set.
+		return this.generations.get(EntityHandle.entity(handle)) == EntityHandle.generation(handle);
 	}
 
 	/**
@@ -104,14 +223,41 @@ class EntityManager implements Serializable, Cloneable {
 	 */
 	void destroyEntity(int entity) {
 		this.removeQueue.set(entity);
+		this.version++;
+		this.generations.set(entity, this.generations.get(entity) + 1);
 
-		this.onEntityRemoved.handleEvent(new EntityEvent(EntityEvent.Type.DESTROYED, entity));
+		if (this.onEntityRemoved != null) {
+			this.onEntityRemoved.onEntity(entity);
+		}
+	}
 
-		if (entity < this.tempNextIndex) {
-			this.tempNextIndex = entity;
+	/**
+	 * Destroys several entities.
+	 *
+	 * @param entities entities to destroy.
+	 */
+	void destroyEntities(BitSet entities) {
+		this.removeQueue.or(entities);
+		this.version++;
+
+		for (int i = entities.nextSetBit(0); i != -1; i = entities.nextSetBit(i + 1)) {
+			this.generations.set(i, this.generations.get(i) + 1);
+
+			if (this.onEntityRemoved != null) {
+				this.onEntityRemoved.onEntity(i);
+			}
 		}
 	}
 
+	/**
+	 * Removes from the given set the entities which don't exist.
+	 *
+	 * @param entities a set of entities.
+	 */
+	void retainExisting(BitSet entities) {
+		entities.and(this.entities);
+	}
+
 	/**
 	 * Returns entities.
 	 *
@@ -125,18 +271,38 @@ class EntityManager implements Serializable, Cloneable {
 	 * Deletes all entities.
 	 */
 	void reset() {
+		// Invalidates the handles of the entities which are still alive.
+		for (int i = this.entities.nextSetBit(0); i != -1; i = this.entities.nextSetBit(i + 1)) {
+			if (!this.removeQueue.get(i)) {
+				this.generations.set(i, this.generations.get(i) + 1);
+			}
+		}
+
 		this.entities.clear();
 		this.removeQueue.clear();
+		this.freeEntities.clear();
+		this.nextIndex = 0;
+		this.version++;
+	}
+
+	/**
+	 * Returns the modification version of the entities, incremented each time entities are created or destroyed.
+	 *
+	 * @return the modification version.
+	 */
+	long getVersion() {
+		return this.version;
 	}
 
 	void flush() {
 		this.entities.andNot(this.removeQueue);
-		this.removeQueue.clear();
 
-		if (this.nextIndex > this.tempNextIndex) {
-			this.nextIndex = this.tempNextIndex;
-			this.tempNextIndex = Integer.MAX_VALUE;
+		// Pushed in descending order so the lowest released ids are reused first.
+		for (int i = this.removeQueue.length() - 1; i >= 0; i = this.removeQueue.previousSetBit(i - 1)) {
+			this.freeEntities.add(i);
 		}
+
+		this.removeQueue.clear();
 	}
 
 	@Override
@@ -158,7 +324,5 @@ class EntityManager implements Serializable, Cloneable {
 
 	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
 		stream.defaultReadObject();
-
-		this.tempNextIndex = Integer.MAX_VALUE;
 	}
 }
@@ -0,0 +1,66 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.lomadriel.mentity.util.BitSetEntitySet;
+import org.lomadriel.mentity.util.CompressedEntitySet;
+import org.lomadriel.mentity.util.EntitySet;
+
+/**
+ * Storage of the entities of the filtered systems.
+ *
+ * @author Jérôme BOULMIER
+ * @see WorldBuilder#setEntitySetStorage(EntitySetStorage)
+ * @since 1.4
+ */
+public enum EntitySetStorage {
+	/**
+	 * Entities are stored in a {@code BitSet}, one bit per entity up to the greatest one.
+	 *
+	 * @see BitSetEntitySet
+	 */
+	BITSET {
+		@Override
+		EntitySet createEntitySet() {
+			return new BitSetEntitySet();
+		}
+	},
+
+	/**
+	 * Entities are stored in a compressed bitmap, suited to large and sparse entity ids.
+	 *
+	 * @see CompressedEntitySet
+	 */
+	COMPRESSED {
+		@Override
+		EntitySet createEntitySet() {
+			return new CompressedEntitySet();
+		}
+	};
+
+	/**
+	 * Creates an empty set of entities using this storage.
+	 *
+	 * @return a new set of entities.
+	 */
+	abstract EntitySet createEntitySet();
+}
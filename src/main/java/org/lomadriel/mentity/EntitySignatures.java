@@ -0,0 +1,116 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.lomadriel.mentity.util.Bag;
+
+import java.util.BitSet;
+
+/**
+ * Component types owned by each entity, indexed by {@link ComponentType#getId()}.
+ * <p>
+ * Kept up to date by the mappers, a component is part of the signature until its removal is flushed.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+final class EntitySignatures {
+	private static final BitSet EMPTY = new BitSet();
+
+	private final Bag<BitSet> signatures = new Bag<>();
+
+	/**
+	 * Returns the signature of the given entity.
+	 *
+	 * @param entity an entity.
+	 * @return the signature of the entity, must not be modified.
+	 */
+	BitSet get(int entity) {
+		BitSet signature = this.signatures.get(entity);
+
+		return signature == null ? EMPTY : signature;
+	}
+
+	/**
+	 * Adds the given type to the signature of the given entity.
+	 *
+	 * @param entity an entity.
+	 * @param type   id of the component type.
+	 */
+	void add(int entity, int type) {
+		BitSet signature = this.signatures.get(entity);
+		if (signature == null) {
+			signature = new BitSet();
+			this.signatures.set(entity, signature);
+		}
+
+		signature.set(type);
+	}
+
+	/**
+	 * Adds the given type to the signatures of the given entities.
+	 *
+	 * @param entities entities.
+	 * @param type     id of the component type.
+	 */
+	void add(BitSet entities, int type) {
+		for (int i = entities.nextSetBit(0); i != -1; i = entities.nextSetBit(i + 1)) {
+			add(i, type);
+		}
+	}
+
+	/**
+	 * Removes the given type from the signature of the given entity.
+	 * The signature is kept to be reused by the next entity with the same id.
+	 *
+	 * @param entity an entity.
+	 * @param type   id of the component type.
+	 */
+	void remove(int entity, int type) {
+		BitSet signature = this.signatures.get(entity);
+		if (signature != null) {
+			signature.clear(type);
+		}
+	}
+
+	/**
+	 * Adds the signatures of the given entities to {@code types}.
+	 *
+	 * @param entities entities.
+	 * @param types    union of the signatures.
+	 */
+	void union(BitSet entities, BitSet types) {
+		for (int i = entities.nextSetBit(0); i != -1; i = entities.nextSetBit(i + 1)) {
+			BitSet signature = this.signatures.get(i);
+			if (signature != null) {
+				types.or(signature);
+			}
+		}
+	}
+
+	/**
+	 * Clears all the signatures.
+	 */
+	void clear() {
+		this.signatures.clear();
+	}
+}
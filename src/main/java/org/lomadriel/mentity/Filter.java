@@ -22,6 +22,8 @@
 package org.lomadriel.mentity;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -37,6 +39,9 @@ public class Filter implements Serializable {
 
 	private final Set<Class<? extends Component>> requiredComponents = new HashSet<>();
 	private final Set<Class<? extends Component>> excludedComponents = new HashSet<>();
+	private final Set<Set<Class<? extends Component>>> oneOfComponents = new HashSet<>();
+
+	private transient FilterPlan plan;
 
 	public Filter(Class<? extends Component> requiredComponent) {
 		this.requiredComponents.add(requiredComponent);
@@ -64,6 +69,35 @@ public class Filter implements Serializable {
 		this.excludedComponents.addAll(excludedComponents);
 	}
 
+	/**
+	 * Constructs a filter with groups of components, an entity must have at least one component of each group.
+	 *
+	 * @param requiredComponents components required.
+	 * @param excludedComponents components excluded.
+	 * @param oneOfComponents    groups of components, the entity must have at least one component of each group.
+	 * @throws IllegalArgumentException if a component is both required and excluded, or if a group is empty or
+	 *                                  contains an excluded component.
+	 */
+	public Filter(Set<Class<? extends Component>> requiredComponents,
+	              Set<Class<? extends Component>> excludedComponents,
+	              Collection<Set<Class<? extends Component>>> oneOfComponents) {
+		this(requiredComponents, excludedComponents);
+
+		for (Set<Class<? extends Component>> group : oneOfComponents) {
+			if (group.isEmpty()) {
+				throw new IllegalArgumentException("A oneOf group can't be empty");
+			}
+
+			for (Class<? extends Component> component : group) {
+				if (this.excludedComponents.contains(component)) {
+					throw new IllegalArgumentException("A oneOf group can't contain an excluded component");
+				}
+			}
+
+			this.oneOfComponents.add(new HashSet<>(group));
+		}
+	}
+
 	Set<Class<? extends Component>> getRequiredComponents() {
 		return this.requiredComponents;
 	}
@@ -72,17 +106,36 @@ public class Filter implements Serializable {
 		return this.excludedComponents;
 	}
 
+	Set<Set<Class<? extends Component>>> getOneOfComponents() {
+		// Null for the filters serialized before the groups were introduced.
+		return this.oneOfComponents == null ? Collections.emptySet() : this.oneOfComponents;
+	}
+
+	/**
+	 * Returns the compiled form of this filter.
+	 *
+	 * @return the compiled form of this filter.
+	 */
+	FilterPlan getPlan() {
+		if (this.plan == null) {
+			this.plan = new FilterPlan(this);
+		}
+
+		return this.plan;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		Filter filter = (Filter) o;
 		return this.requiredComponents.equals(filter.requiredComponents) &&
-				this.excludedComponents.equals(filter.excludedComponents);
+				this.excludedComponents.equals(filter.excludedComponents) &&
+				getOneOfComponents().equals(filter.getOneOfComponents());
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.requiredComponents, this.excludedComponents);
+		return Objects.hash(this.requiredComponents, this.excludedComponents, getOneOfComponents());
 	}
 }
@@ -0,0 +1,105 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Maintains the entities of the filtered systems and of the queries of a world.
+ *
+ * @author Jérôme BOULMIER
+ * @see WorldBuilder.Backend
+ * @since 1.4
+ */
+abstract class FilterBackend {
+	/**
+	 * Registers the given system, its entities are given to it by the next update.
+	 *
+	 * @param filteredEntitySystem a filtered system.
+	 */
+	abstract void register(FilteredSystem filteredEntitySystem);
+
+	/**
+	 * Returns the query of the given filter.
+	 *
+	 * @param filter a filter.
+	 * @return the query of the filter.
+	 */
+	abstract Query query(Filter filter);
+
+	/**
+	 * Updates the entities of all the filters.
+	 *
+	 * @param modifiedEntities entities created, destroyed or whose components changed since the last update.
+	 */
+	abstract void updateAll(BitSet modifiedEntities);
+
+	/**
+	 * Called when the world is reset.
+	 */
+	abstract void reset();
+
+	/**
+	 * Returns a description of the structures used to update the filters.
+	 *
+	 * @return a description of the structures.
+	 */
+	abstract String dumpPlan();
+
+	/**
+	 * Returns the number of filter updates done.
+	 *
+	 * @return the number of filter updates done.
+	 */
+	abstract long getUpdates();
+
+	/**
+	 * Returns the number of filter updates skipped because the entities of the filter couldn't have changed.
+	 *
+	 * @return the number of filter updates skipped.
+	 */
+	abstract long getSkippedUpdates();
+
+	/**
+	 * Gives the entities which entered or left a filter to its systems.
+	 *
+	 * @param systems  the systems of the filter.
+	 * @param inserted entities which entered the filter.
+	 * @param removed  entities which left the filter.
+	 */
+	static void fire(List<FilteredSystem> systems, BitSet inserted, BitSet removed) {
+		if (inserted.isEmpty() && removed.isEmpty()) {
+			return;
+		}
+
+		for (FilteredSystem system : systems) {
+			if (!removed.isEmpty()) {
+				system.removed(removed);
+			}
+
+			if (!inserted.isEmpty()) {
+				system.inserted(inserted);
+			}
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compiled form of a {@link Filter}.
+ * <p>
+ * The set of entities is computed with whole-set operations on the mappers' bitsets: the required sets, intersected
+ * from the smallest to the largest, then the {@code oneOf} groups and the excluded sets.
+ * The evaluation stops as soon as the working set is empty.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+final class FilterPlan {
+	private final ComponentType[] required;
+	private final ComponentType[][] oneOf;
+	private final ComponentType[] excluded;
+	private final ComponentType[] types;
+
+	FilterPlan(Filter filter) {
+		this.required = toTypes(filter.getRequiredComponents());
+		this.excluded = toTypes(filter.getExcludedComponents());
+
+		List<Set<Class<? extends Component>>> groups = new ArrayList<>(filter.getOneOfComponents());
+		this.oneOf = new ComponentType[groups.size()][];
+		for (int i = 0; i < this.oneOf.length; i++) {
+			this.oneOf[i] = toTypes(groups.get(i));
+		}
+
+		Set<Class<? extends Component>> all = new LinkedHashSet<>(filter.getRequiredComponents());
+		groups.forEach(all::addAll);
+		all.addAll(filter.getExcludedComponents());
+		this.types = toTypes(all);
+	}
+
+	/**
+	 * Returns {@code true} if an entity with the given signature matches the filter.
+	 *
+	 * @param signature ids of the component types of an entity.
+	 * @return {@code true} if an entity with the given signature matches the filter.
+	 */
+	boolean matches(BitSet signature) {
+		for (ComponentType requiredType : this.required) {
+			if (!signature.get(requiredType.getId())) {
+				return false;
+			}
+		}
+
+		for (ComponentType[] group : this.oneOf) {
+			if (!matchesOne(group, signature)) {
+				return false;
+			}
+		}
+
+		for (ComponentType excludedType : this.excluded) {
+			if (signature.get(excludedType.getId())) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Computes the entities matching the filter.
+	 *
+	 * @param entities         existing entities, not modified.
+	 * @param componentManager mappers of the components.
+	 * @return the entities matching the filter.
+	 */
+	BitSet evaluate(BitSet entities, ComponentManager componentManager) {
+		BitSet[] operands = new BitSet[this.required.length + 1];
+		operands[0] = entities;
+
+		for (int i = 0; i < this.required.length; i++) {
+			ComponentMapper<?> mapper = componentManager.getMapper(this.required[i]);
+			if (mapper == null) {
+				// No entity ever had this component.
+				return new BitSet();
+			}
+
+			operands[i + 1] = mapper.getEntitiesWithComponent();
+		}
+
+		sortByCardinality(operands);
+
+		BitSet result = (BitSet) operands[0].clone();
+		for (int i = 1; i < operands.length && !result.isEmpty(); i++) {
+			result.and(operands[i]);
+		}
+
+		for (int i = 0; i < this.oneOf.length && !result.isEmpty(); i++) {
+			BitSet any = new BitSet();
+			for (ComponentType type : this.oneOf[i]) {
+				ComponentMapper<?> mapper = componentManager.getMapper(type);
+				if (mapper != null) {
+					any.or(mapper.getEntitiesWithComponent());
+				}
+			}
+
+			result.and(any);
+		}
+
+		for (int i = 0; i < this.excluded.length && !result.isEmpty(); i++) {
+			ComponentMapper<?> mapper = componentManager.getMapper(this.excluded[i]);
+			if (mapper != null) {
+				result.andNot(mapper.getEntitiesWithComponent());
+			}
+		}
+
+		return result;
+	}
+
+	ComponentType[] getRequired() {
+		return this.required;
+	}
+
+	ComponentType[][] getOneOf() {
+		return this.oneOf;
+	}
+
+	ComponentType[] getExcluded() {
+		return this.excluded;
+	}
+
+	/**
+	 * Returns all the types used by the filter, each type once.
+	 *
+	 * @return the types used by the filter.
+	 */
+	ComponentType[] getTypes() {
+		return this.types;
+	}
+
+	private static boolean matchesOne(ComponentType[] group, BitSet signature) {
+		for (ComponentType type : group) {
+			if (signature.get(type.getId())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static void sortByCardinality(BitSet[] operands) {
+		int[] cardinalities = new int[operands.length];
+		for (int i = 0; i < operands.length; i++) {
+			cardinalities[i] = operands[i].cardinality();
+		}
+
+		// Insertion sort, filters rarely have more than a few required components.
+		for (int i = 1; i < operands.length; i++) {
+			BitSet operand = operands[i];
+			int cardinality = cardinalities[i];
+
+			int j = i - 1;
+			while (j >= 0 && cardinalities[j] > cardinality) {
+				operands[j + 1] = operands[j];
+				cardinalities[j + 1] = cardinalities[j];
+				j--;
+			}
+
+			operands[j + 1] = operand;
+			cardinalities[j + 1] = cardinality;
+		}
+	}
+
+	private static ComponentType[] toTypes(Set<Class<? extends Component>> componentClasses) {
+		ComponentType[] types = new ComponentType[componentClasses.size()];
+
+		int i = 0;
+		for (Class<? extends Component> componentClass : componentClasses) {
+			types[i++] = ComponentType.of(componentClass);
+		}
+
+		return types;
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates all the registered filters at once, sharing their common subexpressions.
+ * <p>
+ * The required components of the filters are arranged in a tree: each node is the intersection of its parent with the
+ * entities of one component, so filters sharing required components share the nodes of their common prefix. The
+ * components of each filter are ordered by the number of filters using them, the most used first, to maximize the
+ * shared prefixes. Each node is evaluated at most once per flush, and only if a filter needs it.
+ *
+ * @author Jérôme BOULMIER
+ * @see FilteredSystemManager
+ * @since 1.4
+ */
+final class FilterPlanner {
+	private static final class Node {
+		private final Node parent;
+		private final ComponentType type;
+		private final Map<ComponentType, Node> children = new LinkedHashMap<>();
+		private final BitSet value = new BitSet();
+
+		private int filters;
+		private long stamp = -1;
+		private long evaluations;
+		private long words;
+
+		Node(Node parent, ComponentType type) {
+			this.parent = parent;
+			this.type = type;
+		}
+	}
+
+	private final ComponentManager componentManager;
+	private final List<FilterPlan> plans = new ArrayList<>();
+	private final List<Node> leaves = new ArrayList<>();
+	private final List<BitSet> results = new ArrayList<>();
+	private final BitSet scratch = new BitSet();
+
+	private Node root = new Node(null, null);
+	private long stamp;
+
+	FilterPlanner(ComponentManager componentManager) {
+		this.componentManager = componentManager;
+	}
+
+	/**
+	 * Adds a filter to the plan, the tree is built again.
+	 *
+	 * @param filter a filter.
+	 * @return the index of the filter in the plan.
+	 */
+	int add(Filter filter) {
+		this.plans.add(filter.getPlan());
+		this.results.add(new BitSet());
+		build();
+
+		return this.plans.size() - 1;
+	}
+
+	/**
+	 * Starts a new evaluation of the plan.
+	 *
+	 * @param entities entities to evaluate, copied.
+	 */
+	void begin(BitSet entities) {
+		this.stamp++;
+
+		this.root.value.clear();
+		this.root.value.or(entities);
+		this.root.stamp = this.stamp;
+		this.root.evaluations++;
+	}
+
+	/**
+	 * Returns the entities of the current evaluation matching the given filter.
+	 *
+	 * @param index index of the filter.
+	 * @return the matching entities, reused by the next evaluation.
+	 */
+	BitSet evaluate(int index) {
+		FilterPlan plan = this.plans.get(index);
+		BitSet result = this.results.get(index);
+
+		result.clear();
+		result.or(evaluate(this.leaves.get(index)));
+
+		for (ComponentType[] group : plan.getOneOf()) {
+			if (result.isEmpty()) {
+				return result;
+			}
+
+			this.scratch.clear();
+			for (ComponentType type : group) {
+				ComponentMapper<?> mapper = this.componentManager.getMapper(type);
+				if (mapper != null) {
+					this.scratch.or(mapper.getEntitiesWithComponent());
+				}
+			}
+
+			result.and(this.scratch);
+		}
+
+		for (ComponentType excludedType : plan.getExcluded()) {
+			if (result.isEmpty()) {
+				return result;
+			}
+
+			ComponentMapper<?> mapper = this.componentManager.getMapper(excludedType);
+			if (mapper != null) {
+				result.andNot(mapper.getEntitiesWithComponent());
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a description of the plan: the tree of the nodes, the filters using them and their costs.
+	 * The cost of a node is the number of 64-bit words read from its parent over all its evaluations.
+	 *
+	 * @return a description of the plan.
+	 */
+	String dump() {
+		StringBuilder builder = new StringBuilder();
+		dump(this.root, 0, builder);
+
+		return builder.toString();
+	}
+
+	private BitSet evaluate(Node node) {
+		if (node.stamp != this.stamp) {
+			BitSet parent = evaluate(node.parent);
+
+			node.value.clear();
+			if (!parent.isEmpty()) {
+				ComponentMapper<?> mapper = this.componentManager.getMapper(node.type);
+				if (mapper != null) {
+					node.value.or(parent);
+					node.value.and(mapper.getEntitiesWithComponent());
+				}
+			}
+
+			node.stamp = this.stamp;
+			node.evaluations++;
+			node.words += (parent.length() + Long.SIZE - 1) / Long.SIZE;
+		}
+
+		return node.value;
+	}
+
+	private void build() {
+		Map<ComponentType, Integer> frequencies = new HashMap<>();
+		for (FilterPlan plan : this.plans) {
+			for (ComponentType type : plan.getRequired()) {
+				frequencies.merge(type, 1, Integer::sum);
+			}
+		}
+
+		Comparator<ComponentType> order = Comparator.<ComponentType>comparingInt(frequencies::get).reversed()
+				.thenComparingInt(ComponentType::getId);
+
+		this.root = new Node(null, null);
+		this.leaves.clear();
+
+		for (FilterPlan plan : this.plans) {
+			ComponentType[] required = plan.getRequired().clone();
+			Arrays.sort(required, order);
+
+			Node node = this.root;
+			node.filters++;
+
+			for (ComponentType type : required) {
+				Node child = node.children.get(type);
+				if (child == null) {
+					child = new Node(node, type);
+					node.children.put(type, child);
+				}
+
+				node = child;
+				node.filters++;
+			}
+
+			this.leaves.add(node);
+		}
+	}
+
+	private void dump(Node node, int depth, StringBuilder builder) {
+		for (int i = 0; i < depth; i++) {
+			builder.append("  ");
+		}
+
+		builder.append(node.type == null ? "entities" : node.type.getComponentClass().getSimpleName())
+				.append(" [filters=").append(node.filters)
+				.append(", evaluations=").append(node.evaluations)
+				.append(", words=").append(node.words)
+				.append(", size=").append(node.value.cardinality())
+				.append(']');
+
+		for (int i = 0; i < this.leaves.size(); i++) {
+			if (this.leaves.get(i) == node) {
+				builder.append(" <- filter ").append(i);
+			}
+		}
+
+		builder.append(System.lineSeparator());
+
+		for (Node child : node.children.values()) {
+			dump(child, depth + 1, builder);
+		}
+	}
+}
@@ -21,6 +21,8 @@
 
 package org.lomadriel.mentity;
 
+import org.lomadriel.mentity.util.EntitySet;
+
 import java.util.BitSet;
 
 /**
@@ -32,7 +34,7 @@ import java.util.BitSet;
  */
 public abstract class FilteredSystem extends BaseSystem {
 	private final Filter filter;
-	transient BitSet entities;
+	transient EntitySet entities;
 
 	/**
 	 * Constructs a new instance of {@code FilteredSystem}.
@@ -62,11 +64,11 @@ public abstract class FilteredSystem extends BaseSystem {
 	protected final void update() {
 		beforeUpdate();
 
-		int entity = this.entities.nextSetBit(0);
+		int entity = this.entities.nextEntity(0);
 		while (entity != -1) {
 			update(entity);
 
-			entity = this.entities.nextSetBit(entity + 1);
+			entity = this.entities.nextEntity(entity + 1);
 		}
 
 		afterUpdate();
@@ -85,6 +87,55 @@ public abstract class FilteredSystem extends BaseSystem {
 	 */
 	protected abstract void update(int entity);
 
+	/**
+	 * Called when entities enter this system, once the world has been flushed.
+	 * By default, calls {@link #inserted(int)} for each of them.
+	 * <p>
+	 * The given set must not be modified nor kept after this call.
+	 *
+	 * @param entities entities which now correspond to the filter.
+	 * @since 1.4
+	 */
+	protected void inserted(BitSet entities) {
+		for (int entity = entities.nextSetBit(0); entity != -1; entity = entities.nextSetBit(entity + 1)) {
+			inserted(entity);
+		}
+	}
+
+	/**
+	 * Called when an entity enters this system, once the world has been flushed.
+	 *
+	 * @param entity an entity which now corresponds to the filter.
+	 * @since 1.4
+	 */
+	protected void inserted(int entity) {
+	}
+
+	/**
+	 * Called when entities leave this system, once the world has been flushed.
+	 * By default, calls {@link #removed(int)} for each of them.
+	 * <p>
+	 * The given set must not be modified nor kept after this call.
+	 * The entities may have been destroyed, their components can't be accessed anymore.
+	 *
+	 * @param entities entities which no longer correspond to the filter.
+	 * @since 1.4
+	 */
+	protected void removed(BitSet entities) {
+		for (int entity = entities.nextSetBit(0); entity != -1; entity = entities.nextSetBit(entity + 1)) {
+			removed(entity);
+		}
+	}
+
+	/**
+	 * Called when an entity leaves this system, once the world has been flushed.
+	 *
+	 * @param entity an entity which no longer corresponds to the filter.
+	 * @since 1.4
+	 */
+	protected void removed(int entity) {
+	}
+
 	/**
 	 * Returns the filter of this system.
 	 *
@@ -101,6 +152,6 @@ public abstract class FilteredSystem extends BaseSystem {
 	 * @return {@code true} if the given {@code entity} is in this system.
 	 */
 	public final boolean isInThisSystem(int entity) {
-		return this.entities.get(entity);
+		return this.entities.contains(entity);
 	}
 }
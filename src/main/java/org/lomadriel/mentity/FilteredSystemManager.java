@@ -21,8 +21,10 @@
 
 package org.lomadriel.mentity;
 
-import java.lang.ref.WeakReference;
+import org.lomadriel.mentity.util.EntitySet;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
@@ -34,42 +36,315 @@ import java.util.Map;
  * @author Jérôme BOULMIER
  * @since 0.2
  */
-class FilteredSystemManager {
-	private final WeakReference<World> world;
-	private final Map<Filter, List<FilteredSystem>> filteredEntitySystem = new HashMap<>();
+class FilteredSystemManager extends FilterBackend {
+	private final EntityManager entityManager;
+	private final ComponentManager componentManager;
+	private final EntitySetStorage entitySetStorage;
+
+	private final Map<Filter, Integer> filterIndexes = new HashMap<>();
+
+	/**
+	 * Filters, their entities, systems, queries and the versions they were last updated against, indexed the same way.
+	 * The versions are the version of the entities followed by the versions of the required and excluded mappers.
+	 */
+	private final List<Filter> filters = new ArrayList<>();
+	private final List<EntitySet> filterEntities = new ArrayList<>();
+	private final List<List<FilteredSystem>> filterSystems = new ArrayList<>();
+	private final List<Query> queries = new ArrayList<>();
+	private final List<long[]> filterVersions = new ArrayList<>();
+	private final FilterPlanner planner;
+	private final BitSet modifiedAlive = new BitSet();
+
+	/**
+	 * Filters registered since the last update, their entities are computed from scratch by the next update.
+	 */
+	private final BitSet newFilters = new BitSet();
+	private final BitSet inserted = new BitSet();
+	private final BitSet removed = new BitSet();
+
+	/**
+	 * Filters queried by the systems during an update, added to the planner once the update is done.
+	 */
+	private final List<Filter> unplannedFilters = new ArrayList<>();
+	private boolean updating;
 
-	FilteredSystemManager(World world) {
-		this.world = new WeakReference<>(world);
+	private long updates;
+	private long skippedUpdates;
+
+	FilteredSystemManager(EntityManager entityManager, ComponentManager componentManager,
+	                      EntitySetStorage entitySetStorage) {
+		this.entityManager = entityManager;
+		this.componentManager = componentManager;
+		this.entitySetStorage = entitySetStorage;
+		this.planner = new FilterPlanner(componentManager);
 	}
 
-	void updateAll() {
-		for (Map.Entry<Filter, List<FilteredSystem>> filterListEntry : this.filteredEntitySystem.entrySet()) {
-			BitSet entities = this.world.get().getEntities();
+	/**
+	 * Updates the entities of all the filtered systems.
+	 * Only the modified entities are evaluated again, through the shared plan of the filters, and only for the filters
+	 * whose entities or mappers changed.
+	 * The entities which entered or left a filter are given to its systems.
+	 *
+	 * @param modifiedEntities entities created, destroyed or whose components changed since the last update.
+	 */
+	@Override
+	void updateAll(BitSet modifiedEntities) {
+		if (this.newFilters.isEmpty() && (modifiedEntities.isEmpty() || this.filters.isEmpty())) {
+			return;
+		}
+
+		boolean modified = !modifiedEntities.isEmpty();
+		if (modified) {
+			this.modifiedAlive.clear();
+			this.modifiedAlive.or(modifiedEntities);
+			this.entityManager.retainExisting(this.modifiedAlive);
+			this.planner.begin(this.modifiedAlive);
+		}
+
+		// The systems may query new filters, they are evaluated on their own and updated from the next update.
+		int filterCount = this.filters.size();
+		this.updating = true;
+		try {
+			update(modifiedEntities, modified, filterCount);
+		} finally {
+			this.updating = false;
+			this.unplannedFilters.forEach(this.planner::add);
+			this.unplannedFilters.clear();
+		}
+
+		this.newFilters.clear(0, filterCount);
+	}
+
+	private void update(BitSet modifiedEntities, boolean modified, int filterCount) {
+		for (int i = 0; i < filterCount; i++) {
+			Filter filter = this.filters.get(i);
+			EntitySet entities = this.filterEntities.get(i);
+
+			if (this.newFilters.get(i)) {
+				updateVersions(filter, this.filterVersions.get(i));
+				this.updates++;
+
+				BitSet matching = evaluate(i);
+
+				this.removed.clear();
+				fire(this.filterSystems.get(i), matching, this.removed);
+				continue;
+			}
 
-			for (Class<? extends Component> requiredComponent : filterListEntry.getKey().getRequiredComponents()) {
-				entities.and(this.world.get().getMapper(requiredComponent).getEntitiesWithComponent());
+			if (!modified) {
+				continue;
 			}
 
-			for (Class<? extends Component> excludedComponent : filterListEntry.getKey().getExcludedComponents()) {
-				entities.andNot(this.world.get().getMapper(excludedComponent).getEntitiesWithComponent());
+			if (!updateVersions(filter, this.filterVersions.get(i))) {
+				this.skippedUpdates++;
+				continue;
 			}
 
-			for (FilteredSystem filteredSystem : filterListEntry.getValue()) {
-				filteredSystem.entities = entities;
+			this.updates++;
+
+			BitSet matching = this.planner.evaluate(i);
+
+			// inserted ^ removed = (entities & modified) ^ matching, split by the side each entity comes from.
+			this.removed.clear();
+			entities.intersect(modifiedEntities, this.removed);
+			this.removed.xor(matching);
+			this.inserted.clear();
+			this.inserted.or(this.removed);
+			this.inserted.and(matching);
+			this.removed.andNot(matching);
+
+			entities.andNot(modifiedEntities);
+			entities.or(matching);
+			this.queries.get(i).count += this.inserted.cardinality() - this.removed.cardinality();
+
+			fire(this.filterSystems.get(i), this.inserted, this.removed);
+		}
+	}
+
+	/**
+	 * Called when the world is reset.
+	 * The systems are notified of the removal of all their entities.
+	 */
+	@Override
+	void reset() {
+		this.inserted.clear();
+
+		for (int i = 0; i < this.filters.size(); i++) {
+			EntitySet entities = this.filterEntities.get(i);
+			List<FilteredSystem> systems = this.filterSystems.get(i);
+
+			this.removed.clear();
+			entities.forEach(this.removed::set);
+			entities.clear();
+			this.queries.get(i).count = 0;
+
+			if (this.newFilters.get(i)) {
+				// The systems were never given the entities, they are still given the new ones by the next update.
+				if (systems.isEmpty()) {
+					this.newFilters.clear(i);
+				}
+
+				continue;
 			}
+
+			fire(systems, this.inserted, this.removed);
 		}
 
+		// The mappers are recreated, their versions start again.
+		for (long[] versions : this.filterVersions) {
+			Arrays.fill(versions, -1L);
+		}
+	}
+
+	/**
+	 * Returns a description of the plan used to update the filters.
+	 *
+	 * @return a description of the plan.
+	 * @see FilterPlanner#dump()
+	 */
+	@Override
+	String dumpPlan() {
+		return this.planner.dump();
+	}
+
+	/**
+	 * Returns the number of filter updates done.
+	 *
+	 * @return the number of filter updates done.
+	 */
+	@Override
+	long getUpdates() {
+		return this.updates;
+	}
+
+	/**
+	 * Returns the number of filter updates skipped because neither the entities nor the mappers of the filter changed.
+	 *
+	 * @return the number of filter updates skipped.
+	 */
+	@Override
+	long getSkippedUpdates() {
+		return this.skippedUpdates;
 	}
 
+	@Override
 	void register(FilteredSystem filteredEntitySystem) {
-		Filter filter = filteredEntitySystem.getFilter();
-		List<FilteredSystem> filteredSystems = this.filteredEntitySystem.get(filter);
-		if (filteredSystems == null) {
-			filteredSystems = new ArrayList<>();
+		int index = indexOf(filteredEntitySystem.getFilter());
+
+		// The filter may have been queried already, its entities are given to the systems by the next update.
+		this.newFilters.set(index);
+		this.filterSystems.get(index).add(filteredEntitySystem);
+		filteredEntitySystem.entities = this.filterEntities.get(index);
+	}
+
+	/**
+	 * Returns the query of the given filter.
+	 * The entities of a new filter are computed immediately, then maintained on each update.
+	 *
+	 * @param filter a filter.
+	 * @return the query of the filter.
+	 */
+	@Override
+	Query query(Filter filter) {
+		int index = indexOf(filter);
+
+		if (this.newFilters.get(index)) {
+			evaluate(index);
+
+			// The systems, if any, are still given the entities by the next update.
+			if (this.filterSystems.get(index).isEmpty()) {
+				this.newFilters.clear(index);
+			}
+		}
+
+		return this.queries.get(index);
+	}
+
+	/**
+	 * Returns the index of the given filter, adding it if needed.
+	 *
+	 * @param filter a filter.
+	 * @return the index of the filter.
+	 */
+	private int indexOf(Filter filter) {
+		Integer index = this.filterIndexes.get(filter);
+		if (index != null) {
+			return index;
+		}
+
+		long[] versions = new long[1 + filter.getPlan().getTypes().length];
+		Arrays.fill(versions, -1L);
+
+		EntitySet entities = this.entitySetStorage.createEntitySet();
+
+		// The entities are computed by the next update, so that the systems are given them once initialized.
+		this.newFilters.set(this.filters.size());
+		if (this.updating) {
+			this.unplannedFilters.add(filter);
+		} else {
+			this.planner.add(filter);
 		}
 
-		filteredSystems.add(filteredEntitySystem);
+		this.filterIndexes.put(filter, this.filters.size());
+		this.filters.add(filter);
+		this.filterEntities.add(entities);
+		this.filterSystems.add(new ArrayList<>());
+		this.queries.add(new Query(filter, entities));
+		this.filterVersions.add(versions);
+
+		return this.filters.size() - 1;
+	}
+
+	/**
+	 * Computes the entities of the filter at the given index on the whole world.
+	 *
+	 * @param index index of a filter.
+	 * @return the entities matching the filter.
+	 */
+	private BitSet evaluate(int index) {
+		BitSet matching = this.filters.get(index).getPlan()
+				.evaluate(this.entityManager.getEntities(), this.componentManager);
+
+		EntitySet entities = this.filterEntities.get(index);
+		entities.clear();
+		entities.or(matching);
+		this.queries.get(index).count = matching.cardinality();
+
+		return matching;
+	}
+
+	/**
+	 * Stores the current versions of the entities and of the mappers of the given filter.
+	 *
+	 * @param filter   a filter.
+	 * @param versions versions of the last update of the filter.
+	 * @return {@code true} if one of the versions changed.
+	 */
+	private boolean updateVersions(Filter filter, long[] versions) {
+		boolean changed = false;
+
+		int i = 0;
+		changed |= updateVersion(versions, i++, this.entityManager.getVersion());
+
+		for (ComponentType type : filter.getPlan().getTypes()) {
+			changed |= updateVersion(versions, i++, versionOf(type));
+		}
+
+		return changed;
+	}
+
+	private long versionOf(ComponentType type) {
+		ComponentMapper<?> mapper = this.componentManager.getMapper(type);
+
+		return mapper == null ? 0L : mapper.getVersion();
+	}
+
+	private static boolean updateVersion(long[] versions, int index, long version) {
+		if (versions[index] == version) {
+			return false;
+		}
 
-		this.filteredEntitySystem.put(filter, filteredSystems);
+		versions[index] = version;
+		return true;
 	}
 }
@@ -21,27 +21,21 @@
 
 package org.lomadriel.mentity;
 
-import org.lomadriel.lfc.event.Event;
+import java.util.EventListener;
 
 /**
- * Internal event.
+ * Listener called when a component is added or removed, without any event object.
  *
- * @see InternalEventListener
- * @since 1.0.1
+ * @author Jérôme BOULMIER
+ * @since 1.4
  */
-class InternalEvent implements Event<InternalEventListener> {
-	private final int entity;
-
-	InternalEvent(int entity) {
-		this.entity = entity;
-	}
-
-	@Override
-	public void notify(InternalEventListener listener) {
-		listener.handleComponentModification(this);
-	}
-
-	int getEntity() {
-		return this.entity;
-	}
+@FunctionalInterface
+public interface IntComponentListener extends EventListener {
+	/**
+	 * Calls when a component is added or removed.
+	 *
+	 * @param entity the entity affected.
+	 * @param type   type of the component.
+	 */
+	void onComponent(int entity, ComponentType type);
 }
@@ -24,16 +24,17 @@ package org.lomadriel.mentity;
 import java.util.EventListener;
 
 /**
- * Internal event listener.
+ * Listener called when an entity is created or destroyed, without any event object.
  *
- * @see InternalEvent
- * @since 1.0.1
+ * @author Jérôme BOULMIER
+ * @since 1.4
  */
-interface InternalEventListener extends EventListener {
+@FunctionalInterface
+public interface IntEntityListener extends EventListener {
 	/**
-	 * Calls when a component is added or removed
+	 * Calls when an entity is created or destroyed.
 	 *
-	 * @param event an internal event
+	 * @param entity the entity affected.
 	 */
-	void handleComponentModification(InternalEvent event);
+	void onEntity(int entity);
 }
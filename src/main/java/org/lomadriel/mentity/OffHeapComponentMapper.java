@@ -0,0 +1,412 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Mapper storing components made only of primitive fields outside of the heap.
+ * <p>
+ * Components are stored as fixed-size records, following the {@link ComponentLayout} of the component class,
+ * in pages of direct {@code ByteBuffer}s. A page is allocated when the first component of its range of entities is
+ * added and released when its last component is removed, at flush, or when the world is reset.
+ * Fields are identified by their offset in a record, retrieved once with {@link #intOffset(String)},
+ * {@link #longOffset(String)}, {@link #floatOffset(String)} or {@link #doubleOffset(String)}.
+ * <p>
+ * {@link #addComponent(int, Component)} copies the fields of the given component and
+ * {@link #getComponent(int)} builds a new instance of the component, both use reflection.
+ *
+ * @param <T> component's class.
+ * @author Jérôme BOULMIER
+ * @see ComponentStorage#OFF_HEAP
+ * @since 1.4
+ */
+public final class OffHeapComponentMapper<T extends Component> extends ComponentMapper<T> {
+	private static final long serialVersionUID = 6201542883012373594L;
+
+	private static final int PAGE_SHIFT = 12;
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+	private final transient ComponentLayout layout;
+	private final transient Field[] fields;
+	private final transient int recordSize;
+
+	private transient ByteBuffer[] pages = new ByteBuffer[16];
+	private transient int[] pageSizes = new int[16];
+
+	private transient BitSet serializedEntities;
+	private transient byte[][] serializedPages;
+
+	OffHeapComponentMapper(Class<T> componentClass) {
+		super(componentClass, null);
+
+		this.layout = new ComponentLayout(componentClass);
+		this.fields = this.layout.getFields();
+		this.recordSize = this.layout.getSize();
+	}
+
+	private OffHeapComponentMapper(OffHeapComponentMapper<T> copy) {
+		this(copy.getComponentClass());
+
+		this.pages = new ByteBuffer[Math.max(16, copy.serializedPages.length)];
+		this.pageSizes = new int[this.pages.length];
+
+		for (int i = copy.serializedEntities.nextSetBit(0); i != -1; i = copy.serializedEntities.nextSetBit(i + 1)) {
+			this.pageSizes[i >>> PAGE_SHIFT]++;
+		}
+
+		for (int i = 0; i < copy.serializedPages.length; i++) {
+			if (copy.serializedPages[i] != null) {
+				this.pages[i] = allocatePage();
+				this.pages[i].put(copy.serializedPages[i]);
+				this.pages[i].clear();
+			}
+		}
+
+		getEntitiesWithComponent().or(copy.serializedEntities);
+	}
+
+	/**
+	 * Adds a component to the given entity without allocating it, all its fields are set to zero.
+	 *
+	 * @param entity an existing entity.
+	 * @return null, off-heap components are never allocated.
+	 */
+	@Override
+	public T create(int entity) {
+		assert (entity >= 0);
+
+		modified(entity);
+
+		ByteBuffer page = reserve(entity);
+		int position = position(entity);
+		for (int i = 0; i < this.recordSize; i++) {
+			page.put(position + i, (byte) 0);
+		}
+
+		added(entity, false);
+
+		return null;
+	}
+
+	/**
+	 * Returns the offset of the {@code int} field with the given name.
+	 *
+	 * @param name name of the field.
+	 * @return the offset of the field.
+	 * @throws IllegalArgumentException if the component has no {@code int} field with this name.
+	 */
+	public int intOffset(String name) {
+		return this.layout.getOffset(name, int.class);
+	}
+
+	/**
+	 * Returns the offset of the {@code long} field with the given name.
+	 *
+	 * @param name name of the field.
+	 * @return the offset of the field.
+	 * @throws IllegalArgumentException if the component has no {@code long} field with this name.
+	 */
+	public int longOffset(String name) {
+		return this.layout.getOffset(name, long.class);
+	}
+
+	/**
+	 * Returns the offset of the {@code float} field with the given name.
+	 *
+	 * @param name name of the field.
+	 * @return the offset of the field.
+	 * @throws IllegalArgumentException if the component has no {@code float} field with this name.
+	 */
+	public int floatOffset(String name) {
+		return this.layout.getOffset(name, float.class);
+	}
+
+	/**
+	 * Returns the offset of the {@code double} field with the given name.
+	 *
+	 * @param name name of the field.
+	 * @return the offset of the field.
+	 * @throws IllegalArgumentException if the component has no {@code double} field with this name.
+	 */
+	public int doubleOffset(String name) {
+		return this.layout.getOffset(name, double.class);
+	}
+
+	public int getInt(int entity, int offset) {
+		return this.pages[entity >>> PAGE_SHIFT].getInt(position(entity) + offset);
+	}
+
+	public void setInt(int entity, int offset, int value) {
+		this.pages[entity >>> PAGE_SHIFT].putInt(position(entity) + offset, value);
+	}
+
+	public long getLong(int entity, int offset) {
+		return this.pages[entity >>> PAGE_SHIFT].getLong(position(entity) + offset);
+	}
+
+	public void setLong(int entity, int offset, long value) {
+		this.pages[entity >>> PAGE_SHIFT].putLong(position(entity) + offset, value);
+	}
+
+	public float getFloat(int entity, int offset) {
+		return this.pages[entity >>> PAGE_SHIFT].getFloat(position(entity) + offset);
+	}
+
+	public void setFloat(int entity, int offset, float value) {
+		this.pages[entity >>> PAGE_SHIFT].putFloat(position(entity) + offset, value);
+	}
+
+	public double getDouble(int entity, int offset) {
+		return this.pages[entity >>> PAGE_SHIFT].getDouble(position(entity) + offset);
+	}
+
+	public void setDouble(int entity, int offset, double value) {
+		this.pages[entity >>> PAGE_SHIFT].putDouble(position(entity) + offset, value);
+	}
+
+	/**
+	 * Returns a new accessor on this mapper.
+	 * An accessor is meant to be created once and moved from entity to entity with {@link Accessor#at(int)}.
+	 *
+	 * @return a new accessor.
+	 */
+	public Accessor accessor() {
+		return new Accessor();
+	}
+
+	/**
+	 * Returns the number of bytes currently allocated outside of the heap by this mapper.
+	 *
+	 * @return the number of bytes allocated.
+	 */
+	public long getAllocatedMemory() {
+		long pageCount = Arrays.stream(this.pages).filter(page -> page != null).count();
+
+		return pageCount * (this.recordSize << PAGE_SHIFT);
+	}
+
+	@Override
+	void store(int entity, T component) {
+		ByteBuffer page = reserve(entity);
+		int position = position(entity);
+
+		try {
+			for (int i = 0; i < this.fields.length; i++) {
+				Field field = this.fields[i];
+				int index = position + this.layout.getOffset(i);
+				Class<?> type = field.getType();
+
+				if (type == int.class) {
+					page.putInt(index, field.getInt(component));
+				} else if (type == long.class) {
+					page.putLong(index, field.getLong(component));
+				} else if (type == float.class) {
+					page.putFloat(index, field.getFloat(component));
+				} else {
+					page.putDouble(index, field.getDouble(component));
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	T load(int entity) {
+		int pageIndex = entity >>> PAGE_SHIFT;
+		if (pageIndex >= this.pages.length || this.pages[pageIndex] == null) {
+			return null;
+		}
+
+		ByteBuffer page = this.pages[pageIndex];
+		int position = position(entity);
+
+		try {
+			T component = getComponentClass().getDeclaredConstructor().newInstance();
+			component.entity = entity;
+
+			for (int i = 0; i < this.fields.length; i++) {
+				Field field = this.fields[i];
+				int index = position + this.layout.getOffset(i);
+				Class<?> type = field.getType();
+
+				if (type == int.class) {
+					field.setInt(component, page.getInt(index));
+				} else if (type == long.class) {
+					field.setLong(component, page.getLong(index));
+				} else if (type == float.class) {
+					field.setFloat(component, page.getFloat(index));
+				} else {
+					field.setDouble(component, page.getDouble(index));
+				}
+			}
+
+			return component;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(getComponentClass().getName() + " can't be instantiated", e);
+		}
+	}
+
+	@Override
+	void release(int entity) {
+		int pageIndex = entity >>> PAGE_SHIFT;
+
+		if (--this.pageSizes[pageIndex] == 0) {
+			this.pages[pageIndex] = null;
+		}
+	}
+
+	@Override
+	void dispose() {
+		Arrays.fill(this.pages, null);
+		Arrays.fill(this.pageSizes, 0);
+	}
+
+	/**
+	 * Returns the page of the given entity, allocates it if needed and counts the entity in it.
+	 *
+	 * @param entity an entity which is getting the component.
+	 * @return the page of the entity.
+	 */
+	private ByteBuffer reserve(int entity) {
+		int pageIndex = entity >>> PAGE_SHIFT;
+
+		if (pageIndex >= this.pages.length) {
+			int newLength = Math.max(this.pages.length << 1, pageIndex + 1);
+			this.pages = Arrays.copyOf(this.pages, newLength);
+			this.pageSizes = Arrays.copyOf(this.pageSizes, newLength);
+		}
+
+		if (this.pages[pageIndex] == null) {
+			this.pages[pageIndex] = allocatePage();
+		}
+
+		// A component replaced before the end of the iteration is counted once.
+		if (!hasComponent(entity)) {
+			this.pageSizes[pageIndex]++;
+		}
+
+		return this.pages[pageIndex];
+	}
+
+	private ByteBuffer allocatePage() {
+		return ByteBuffer.allocateDirect(this.recordSize << PAGE_SHIFT).order(ByteOrder.nativeOrder());
+	}
+
+	private int position(int entity) {
+		return (entity & PAGE_MASK) * this.recordSize;
+	}
+
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.defaultWriteObject();
+		stream.writeObject(getEntitiesWithComponent());
+
+		stream.writeInt(this.pages.length);
+		for (ByteBuffer page : this.pages) {
+			if (page == null) {
+				stream.writeObject(null);
+			} else {
+				byte[] bytes = new byte[page.capacity()];
+				page.duplicate().get(bytes);
+				stream.writeObject(bytes);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+		this.serializedEntities = (BitSet) stream.readObject();
+
+		this.serializedPages = new byte[stream.readInt()][];
+		for (int i = 0; i < this.serializedPages.length; i++) {
+			this.serializedPages[i] = (byte[]) stream.readObject();
+		}
+	}
+
+	private Object readResolve() {
+		return new OffHeapComponentMapper<>(this);
+	}
+
+	/**
+	 * Flyweight used to read and write the fields of the component of one entity at a time.
+	 */
+	public final class Accessor {
+		private ByteBuffer page;
+		private int position;
+
+		private Accessor() {
+		}
+
+		/**
+		 * Moves this accessor to the given {@code entity}.
+		 *
+		 * @param entity an entity which has the component.
+		 * @return itself
+		 */
+		public Accessor at(int entity) {
+			this.page = OffHeapComponentMapper.this.pages[entity >>> PAGE_SHIFT];
+			this.position = position(entity);
+
+			return this;
+		}
+
+		public int getInt(int offset) {
+			return this.page.getInt(this.position + offset);
+		}
+
+		public void setInt(int offset, int value) {
+			this.page.putInt(this.position + offset, value);
+		}
+
+		public long getLong(int offset) {
+			return this.page.getLong(this.position + offset);
+		}
+
+		public void setLong(int offset, long value) {
+			this.page.putLong(this.position + offset, value);
+		}
+
+		public float getFloat(int offset) {
+			return this.page.getFloat(this.position + offset);
+		}
+
+		public void setFloat(int offset, float value) {
+			this.page.putFloat(this.position + offset, value);
+		}
+
+		public double getDouble(int offset) {
+			return this.page.getDouble(this.position + offset);
+		}
+
+		public void setDouble(int offset, double value) {
+			this.page.putDouble(this.position + offset, value);
+		}
+	}
+}
@@ -0,0 +1,389 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Mapper storing components made only of primitive fields as a structure of arrays.
+ * <p>
+ * Each {@code int}, {@code long}, {@code float} or {@code double} field of the component is stored in its own column,
+ * indexed by entity. Fields are identified by a column index retrieved once with {@link #intColumn(String)},
+ * {@link #longColumn(String)}, {@link #floatColumn(String)} or {@link #doubleColumn(String)},
+ * and are then read and written with the accessors of this mapper or of an {@link Accessor},
+ * without allocating any component.
+ * <p>
+ * {@link #addComponent(int, Component)} copies the fields of the given component and
+ * {@link #getComponent(int)} builds a new instance of the component, both use reflection.
+ *
+ * @param <T> component's class.
+ * @author Jérôme BOULMIER
+ * @see ComponentStorage#PACKED
+ * @since 1.4
+ */
+public final class PackedComponentMapper<T extends Component> extends ComponentMapper<T> {
+	private static final long serialVersionUID = -3950305936186120447L;
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final transient Field[] intFields;
+	private final transient Field[] longFields;
+	private final transient Field[] floatFields;
+	private final transient Field[] doubleFields;
+
+	private int[][] ints;
+	private long[][] longs;
+	private float[][] floats;
+	private double[][] doubles;
+	private int capacity;
+
+	private transient BitSet serializedEntities;
+
+	PackedComponentMapper(Class<T> componentClass) {
+		super(componentClass, null);
+
+		ComponentLayout layout = new ComponentLayout(componentClass);
+		this.intFields = layout.getFields(int.class);
+		this.longFields = layout.getFields(long.class);
+		this.floatFields = layout.getFields(float.class);
+		this.doubleFields = layout.getFields(double.class);
+
+		this.capacity = DEFAULT_CAPACITY;
+		this.ints = new int[this.intFields.length][this.capacity];
+		this.longs = new long[this.longFields.length][this.capacity];
+		this.floats = new float[this.floatFields.length][this.capacity];
+		this.doubles = new double[this.doubleFields.length][this.capacity];
+	}
+
+	private PackedComponentMapper(PackedComponentMapper<T> copy) {
+		this(copy.getComponentClass());
+
+		this.capacity = copy.capacity;
+		this.ints = copy.ints;
+		this.longs = copy.longs;
+		this.floats = copy.floats;
+		this.doubles = copy.doubles;
+
+		getEntitiesWithComponent().or(copy.serializedEntities);
+	}
+
+	/**
+	 * Adds a component to the given entity without allocating it, all its fields are set to zero.
+	 *
+	 * @param entity an existing entity.
+	 * @return null, packed components are never allocated.
+	 */
+	@Override
+	public T create(int entity) {
+		assert (entity >= 0);
+
+		modified(entity);
+
+		clear(entity);
+		added(entity, false);
+
+		return null;
+	}
+
+	/**
+	 * Returns the column of the {@code int} field with the given name.
+	 *
+	 * @param name name of the field.
+	 * @return the column of the field.
+	 * @throws IllegalArgumentException if the component has no {@code int} field with this name.
+	 */
+	public int intColumn(String name) {
+		return column(this.intFields, name);
+	}
+
+	/**
+	 * Returns the column of the {@code long} field with the given name.
+	 *
+	 * @param name name of the field.
+	 * @return the column of the field.
+	 * @throws IllegalArgumentException if the component has no {@code long} field with this name.
+	 */
+	public int longColumn(String name) {
+		return column(this.longFields, name);
+	}
+
+	/**
+	 * Returns the column of the {@code float} field with the given name.
+	 *
+	 * @param name name of the field.
+	 * @return the column of the field.
+	 * @throws IllegalArgumentException if the component has no {@code float} field with this name.
+	 */
+	public int floatColumn(String name) {
+		return column(this.floatFields, name);
+	}
+
+	/**
+	 * Returns the column of the {@code double} field with the given name.
+	 *
+	 * @param name name of the field.
+	 * @return the column of the field.
+	 * @throws IllegalArgumentException if the component has no {@code double} field with this name.
+	 */
+	public int doubleColumn(String name) {
+		return column(this.doubleFields, name);
+	}
+
+	public int getInt(int entity, int column) {
+		return this.ints[column][entity];
+	}
+
+	public void setInt(int entity, int column, int value) {
+		this.ints[column][entity] = value;
+	}
+
+	public long getLong(int entity, int column) {
+		return this.longs[column][entity];
+	}
+
+	public void setLong(int entity, int column, long value) {
+		this.longs[column][entity] = value;
+	}
+
+	public float getFloat(int entity, int column) {
+		return this.floats[column][entity];
+	}
+
+	public void setFloat(int entity, int column, float value) {
+		this.floats[column][entity] = value;
+	}
+
+	public double getDouble(int entity, int column) {
+		return this.doubles[column][entity];
+	}
+
+	public void setDouble(int entity, int column, double value) {
+		this.doubles[column][entity] = value;
+	}
+
+	/**
+	 * Returns a new accessor on this mapper.
+	 * An accessor is meant to be created once and moved from entity to entity with {@link Accessor#at(int)}.
+	 *
+	 * @return a new accessor.
+	 */
+	public Accessor accessor() {
+		return new Accessor();
+	}
+
+	@Override
+	void store(int entity, T component) {
+		ensureCapacity(entity);
+
+		try {
+			for (int i = 0; i < this.intFields.length; i++) {
+				this.ints[i][entity] = this.intFields[i].getInt(component);
+			}
+
+			for (int i = 0; i < this.longFields.length; i++) {
+				this.longs[i][entity] = this.longFields[i].getLong(component);
+			}
+
+			for (int i = 0; i < this.floatFields.length; i++) {
+				this.floats[i][entity] = this.floatFields[i].getFloat(component);
+			}
+
+			for (int i = 0; i < this.doubleFields.length; i++) {
+				this.doubles[i][entity] = this.doubleFields[i].getDouble(component);
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	T load(int entity) {
+		if (entity >= this.capacity) {
+			return null;
+		}
+
+		try {
+			T component = getComponentClass().getDeclaredConstructor().newInstance();
+			component.entity = entity;
+
+			for (int i = 0; i < this.intFields.length; i++) {
+				this.intFields[i].setInt(component, this.ints[i][entity]);
+			}
+
+			for (int i = 0; i < this.longFields.length; i++) {
+				this.longFields[i].setLong(component, this.longs[i][entity]);
+			}
+
+			for (int i = 0; i < this.floatFields.length; i++) {
+				this.floatFields[i].setFloat(component, this.floats[i][entity]);
+			}
+
+			for (int i = 0; i < this.doubleFields.length; i++) {
+				this.doubleFields[i].setDouble(component, this.doubles[i][entity]);
+			}
+
+			return component;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(getComponentClass().getName() + " can't be instantiated", e);
+		}
+	}
+
+	@Override
+	void release(int entity) {
+		// Nothing to release, the values are cleared when a component is created.
+	}
+
+	@Override
+	void dispose() {
+		this.capacity = DEFAULT_CAPACITY;
+		this.ints = new int[this.intFields.length][this.capacity];
+		this.longs = new long[this.longFields.length][this.capacity];
+		this.floats = new float[this.floatFields.length][this.capacity];
+		this.doubles = new double[this.doubleFields.length][this.capacity];
+	}
+
+	private void clear(int entity) {
+		ensureCapacity(entity);
+
+		for (int[] column : this.ints) {
+			column[entity] = 0;
+		}
+
+		for (long[] column : this.longs) {
+			column[entity] = 0L;
+		}
+
+		for (float[] column : this.floats) {
+			column[entity] = 0.0f;
+		}
+
+		for (double[] column : this.doubles) {
+			column[entity] = 0.0;
+		}
+	}
+
+	private void ensureCapacity(int entity) {
+		if (entity >= this.capacity) {
+			int newCapacity = Math.max(this.capacity << 1, entity + 1);
+
+			for (int i = 0; i < this.ints.length; i++) {
+				this.ints[i] = Arrays.copyOf(this.ints[i], newCapacity);
+			}
+
+			for (int i = 0; i < this.longs.length; i++) {
+				this.longs[i] = Arrays.copyOf(this.longs[i], newCapacity);
+			}
+
+			for (int i = 0; i < this.floats.length; i++) {
+				this.floats[i] = Arrays.copyOf(this.floats[i], newCapacity);
+			}
+
+			for (int i = 0; i < this.doubles.length; i++) {
+				this.doubles[i] = Arrays.copyOf(this.doubles[i], newCapacity);
+			}
+
+			this.capacity = newCapacity;
+		}
+	}
+
+	private int column(Field[] fields, String name) {
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i].getName().equals(name)) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException(getComponentClass().getName() + " has no field " + name + " of this type");
+	}
+
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.defaultWriteObject();
+		stream.writeObject(getEntitiesWithComponent());
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+		this.serializedEntities = (BitSet) stream.readObject();
+	}
+
+	private Object readResolve() {
+		return new PackedComponentMapper<>(this);
+	}
+
+	/**
+	 * Flyweight used to read and write the fields of the component of one entity at a time.
+	 */
+	public final class Accessor {
+		private int entity;
+
+		private Accessor() {
+		}
+
+		/**
+		 * Moves this accessor to the given {@code entity}.
+		 *
+		 * @param entity an entity which has the component.
+		 * @return itself
+		 */
+		public Accessor at(int entity) {
+			this.entity = entity;
+
+			return this;
+		}
+
+		public int getInt(int column) {
+			return PackedComponentMapper.this.ints[column][this.entity];
+		}
+
+		public void setInt(int column, int value) {
+			PackedComponentMapper.this.ints[column][this.entity] = value;
+		}
+
+		public long getLong(int column) {
+			return PackedComponentMapper.this.longs[column][this.entity];
+		}
+
+		public void setLong(int column, long value) {
+			PackedComponentMapper.this.longs[column][this.entity] = value;
+		}
+
+		public float getFloat(int column) {
+			return PackedComponentMapper.this.floats[column][this.entity];
+		}
+
+		public void setFloat(int column, float value) {
+			PackedComponentMapper.this.floats[column][this.entity] = value;
+		}
+
+		public double getDouble(int column) {
+			return PackedComponentMapper.this.doubles[column][this.entity];
+		}
+
+		public void setDouble(int column, double value) {
+			PackedComponentMapper.this.doubles[column][this.entity] = value;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.lomadriel.mentity.util.EntitySet;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Live and read-only view of the entities matching a filter.
+ * <p>
+ * The entities are maintained by the world the same way as the entities of the filtered systems: they are updated
+ * on each flush, only when the entities or the mappers used by the filter changed.
+ *
+ * @author Jérôme BOULMIER
+ * @see World#query(Filter)
+ * @since 1.4
+ */
+public final class Query {
+	private final Filter filter;
+	private final EntitySet entities;
+	int count;
+
+	Query(Filter filter, EntitySet entities) {
+		this.filter = filter;
+		this.entities = entities;
+	}
+
+	/**
+	 * Returns the filter of this query.
+	 *
+	 * @return the filter.
+	 */
+	public Filter getFilter() {
+		return this.filter;
+	}
+
+	/**
+	 * Returns the number of entities matching the filter.
+	 *
+	 * @return the number of entities.
+	 */
+	public int count() {
+		return this.count;
+	}
+
+	/**
+	 * Returns true if no entity matches the filter.
+	 *
+	 * @return {@code true} if no entity matches the filter.
+	 */
+	public boolean isEmpty() {
+		return this.count == 0;
+	}
+
+	/**
+	 * Returns true if the given {@code entity} matches the filter.
+	 *
+	 * @param entity an entity.
+	 * @return {@code true} if the entity matches the filter.
+	 */
+	public boolean contains(int entity) {
+		return this.entities.contains(entity);
+	}
+
+	/**
+	 * Calls the given consumer for each entity matching the filter, in ascending order.
+	 *
+	 * @param consumer consumer of the entities.
+	 * @throws NullPointerException if the consumer is null.
+	 */
+	public void forEach(IntConsumer consumer) {
+		if (consumer == null) {
+			throw new NullPointerException("consumer can't be null");
+		}
+
+		this.entities.forEach(consumer);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import org.lomadriel.mentity.util.IntBag;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapper of components shared by several entities.
+ * <p>
+ * Equal components (see {@link Object#equals(Object)}) are stored once, as a value referenced by all the entities
+ * which have it through a small index. A value is released when no entity references it anymore.
+ * Shared components must be immutable and their {@link Component#getEntity()} is meaningless.
+ * <p>
+ * Systems can process the entities sharing a value as a group:
+ * <pre>{@code
+ * for (int i = 0; i < mapper.getValueCount(); i++) {
+ *     Mesh mesh = mapper.getValue(i);
+ *     if (mesh != null) {
+ *         render(mesh, mapper.getEntities(i));
+ *     }
+ * }
+ * }</pre>
+ *
+ * @param <T> component's class.
+ * @author Jérôme BOULMIER
+ * @see ComponentStorage#SHARED
+ * @since 1.4
+ */
+public final class SharedComponentMapper<T extends Component> extends ComponentMapper<T> {
+	private static final long serialVersionUID = 2880400346183908542L;
+
+	private final List<T> values = new ArrayList<>();
+	private final List<BitSet> groups = new ArrayList<>();
+	private final IntBag referenceCounts = new IntBag();
+	private final IntBag freeIndexes = new IntBag();
+
+	/**
+	 * Index of the value of each entity, plus one. 0 means no value.
+	 */
+	private final IntBag entityValues = new IntBag();
+
+	private final transient Map<T, Integer> indexes = new HashMap<>();
+
+	SharedComponentMapper(Class<T> componentClass) {
+		super(componentClass, null);
+	}
+
+	private SharedComponentMapper(SharedComponentMapper<T> copy) {
+		this(copy.getComponentClass());
+
+		this.values.addAll(copy.values);
+		this.groups.addAll(copy.groups);
+
+		for (int i = 0; i < copy.values.size(); i++) {
+			this.referenceCounts.set(i, copy.referenceCounts.get(i));
+
+			if (copy.values.get(i) == null) {
+				this.freeIndexes.add(i);
+			} else {
+				this.indexes.put(copy.values.get(i), i);
+				getEntitiesWithComponent().or(copy.groups.get(i));
+			}
+		}
+
+		for (int i = 0; i < copy.entityValues.size(); i++) {
+			this.entityValues.set(i, copy.entityValues.get(i));
+		}
+	}
+
+	/**
+	 * Returns the number of value indexes, including the released ones.
+	 *
+	 * @return the number of value indexes.
+	 */
+	public int getValueCount() {
+		return this.values.size();
+	}
+
+	/**
+	 * Returns the value at the given index.
+	 *
+	 * @param index index of the value, lower than {@link #getValueCount()}.
+	 * @return the value, null if the value has been released.
+	 */
+	public T getValue(int index) {
+		return this.values.get(index);
+	}
+
+	/**
+	 * Returns the index of the given value.
+	 *
+	 * @param value a value.
+	 * @return the index of the value, -1 if no entity has this value.
+	 */
+	public int indexOf(T value) {
+		Integer index = this.indexes.get(value);
+
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the index of the value of the given entity.
+	 *
+	 * @param entity an entity.
+	 * @return the index of the value of the entity, -1 if the entity has no value.
+	 */
+	public int getValueIndex(int entity) {
+		return this.entityValues.get(entity) - 1;
+	}
+
+	/**
+	 * Returns the entities sharing the value at the given index.
+	 * The returned set must not be modified.
+	 *
+	 * @param index index of the value, lower than {@link #getValueCount()}.
+	 * @return the entities sharing the value.
+	 */
+	public BitSet getEntities(int index) {
+		return this.groups.get(index);
+	}
+
+	/**
+	 * Returns the number of entities sharing the value at the given index.
+	 *
+	 * @param index index of the value, lower than {@link #getValueCount()}.
+	 * @return the number of entities sharing the value.
+	 */
+	public int getReferenceCount(int index) {
+		return this.referenceCounts.get(index);
+	}
+
+	@Override
+	void store(int entity, T component) {
+		if (this.entityValues.get(entity) != 0) {
+			dereference(entity);
+		}
+
+		Integer index = this.indexes.get(component);
+		if (index == null) {
+			if (this.freeIndexes.isEmpty()) {
+				index = this.values.size();
+				this.values.add(component);
+				this.groups.add(new BitSet());
+			} else {
+				index = this.freeIndexes.pop();
+				this.values.set(index, component);
+			}
+
+			this.indexes.put(component, index);
+		}
+
+		this.referenceCounts.set(index, this.referenceCounts.get(index) + 1);
+		this.groups.get(index).set(entity);
+		this.entityValues.set(entity, index + 1);
+	}
+
+	@Override
+	T load(int entity) {
+		int index = this.entityValues.get(entity) - 1;
+
+		return index == -1 ? null : this.values.get(index);
+	}
+
+	@Override
+	void release(int entity) {
+		if (this.entityValues.get(entity) != 0) {
+			dereference(entity);
+		}
+	}
+
+	@Override
+	void dispose() {
+		this.values.clear();
+		this.groups.clear();
+		this.referenceCounts.clear();
+		this.freeIndexes.clear();
+		this.entityValues.clear();
+		this.indexes.clear();
+	}
+
+	private void dereference(int entity) {
+		int index = this.entityValues.get(entity) - 1;
+
+		this.entityValues.set(entity, 0);
+		this.groups.get(index).clear(entity);
+
+		int referenceCount = this.referenceCounts.get(index) - 1;
+		this.referenceCounts.set(index, referenceCount);
+
+		if (referenceCount == 0) {
+			this.indexes.remove(this.values.get(index));
+			this.values.set(index, null);
+			this.freeIndexes.add(index);
+		}
+	}
+
+	private Object readResolve() {
+		return new SharedComponentMapper<>(this);
+	}
+}
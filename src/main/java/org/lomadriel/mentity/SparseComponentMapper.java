@@ -0,0 +1,195 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.util.Arrays;
+
+/**
+ * Mapper storing the components in a sparse set.
+ * <p>
+ * Components are packed in a dense array, with no hole, and a paged sparse table maps each entity to the index of its
+ * component in the dense array. Memory follows the number of components rather than the highest entity id,
+ * which suits components owned by a small part of the entities.
+ * Components removed at flush are swapped with the last component of the dense array,
+ * so the dense order isn't the order of the entities.
+ * <p>
+ * Systems can iterate the dense array directly:
+ * <pre>{@code
+ * for (int i = 0; i < mapper.getDenseSize(); i++) {
+ *     update(mapper.getDenseEntity(i), mapper.getDenseComponent(i));
+ * }
+ * }</pre>
+ *
+ * @param <T> component's class.
+ * @author Jérôme BOULMIER
+ * @see ComponentStorage#SPARSE
+ * @since 1.4
+ */
+public final class SparseComponentMapper<T extends Component> extends ComponentMapper<T> {
+	private static final long serialVersionUID = -8413637011093377451L;
+
+	private static final int PAGE_SHIFT = 10;
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+	private Component[] dense = new Component[16];
+	private int[] denseEntities = new int[16];
+	private int size;
+
+	private transient int[][] sparse = new int[16][];
+
+	SparseComponentMapper(Class<T> componentClass) {
+		super(componentClass, null);
+	}
+
+	private SparseComponentMapper(SparseComponentMapper<T> copy) {
+		super(copy.getComponentClass(), null);
+
+		this.dense = copy.dense;
+		this.denseEntities = copy.denseEntities;
+		this.size = copy.size;
+
+		for (int i = 0; i < this.size; i++) {
+			setIndex(this.denseEntities[i], i);
+			getEntitiesWithComponent().set(this.denseEntities[i]);
+		}
+	}
+
+	/**
+	 * Returns the number of components in the dense array.
+	 *
+	 * @return the number of components in the dense array.
+	 */
+	public int getDenseSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the entity owning the component at the given position in the dense array.
+	 *
+	 * @param index position in the dense array, lower than {@link #getDenseSize()}.
+	 * @return the entity owning the component.
+	 */
+	public int getDenseEntity(int index) {
+		return this.denseEntities[index];
+	}
+
+	/**
+	 * Returns the component at the given position in the dense array.
+	 *
+	 * @param index position in the dense array, lower than {@link #getDenseSize()}.
+	 * @return the component.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getDenseComponent(int index) {
+		return (T) this.dense[index];
+	}
+
+	@Override
+	void store(int entity, T component) {
+		component.entity = entity;
+
+		int index = indexOf(entity);
+
+		if (index == -1) {
+			if (this.size == this.dense.length) {
+				this.dense = Arrays.copyOf(this.dense, this.size << 1);
+				this.denseEntities = Arrays.copyOf(this.denseEntities, this.size << 1);
+			}
+
+			index = this.size++;
+			this.denseEntities[index] = entity;
+			setIndex(entity, index);
+		}
+
+		this.dense[index] = component;
+	}
+
+	@Override
+	T load(int entity) {
+		int index = indexOf(entity);
+
+		return index == -1 ? null : getDenseComponent(index);
+	}
+
+	@Override
+	void release(int entity) {
+		int index = indexOf(entity);
+		if (index == -1) {
+			return;
+		}
+
+		recycle(getDenseComponent(index));
+
+		int last = --this.size;
+		if (index != last) {
+			int movedEntity = this.denseEntities[last];
+			this.dense[index] = this.dense[last];
+			this.denseEntities[index] = movedEntity;
+			setIndex(movedEntity, index);
+		}
+
+		this.dense[last] = null;
+	}
+
+	@Override
+	void dispose() {
+		this.dense = new Component[16];
+		this.denseEntities = new int[16];
+		this.sparse = new int[16][];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the position of the component of the given entity in the dense array.
+	 *
+	 * @param entity an entity.
+	 * @return the position of the component, -1 if the entity has no component in the dense array.
+	 */
+	private int indexOf(int entity) {
+		int pageIndex = entity >>> PAGE_SHIFT;
+		if (pageIndex >= this.sparse.length || this.sparse[pageIndex] == null) {
+			return -1;
+		}
+
+		// The sparse table isn't cleared on removal, the dense array tells if the index is still valid.
+		int index = this.sparse[pageIndex][entity & PAGE_MASK];
+		return (index < this.size && this.denseEntities[index] == entity) ? index : -1;
+	}
+
+	private void setIndex(int entity, int index) {
+		int pageIndex = entity >>> PAGE_SHIFT;
+
+		if (pageIndex >= this.sparse.length) {
+			this.sparse = Arrays.copyOf(this.sparse, Math.max(this.sparse.length << 1, pageIndex + 1));
+		}
+
+		if (this.sparse[pageIndex] == null) {
+			this.sparse[pageIndex] = new int[1 << PAGE_SHIFT];
+		}
+
+		this.sparse[pageIndex][entity & PAGE_MASK] = index;
+	}
+
+	private Object readResolve() {
+		return new SparseComponentMapper<>(this);
+	}
+}
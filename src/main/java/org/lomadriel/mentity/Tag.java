@@ -0,0 +1,36 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+/**
+ * Component without data, used to mark entities.
+ * Extends this class to define a new tag, a tag must not declare any field.
+ * <p>
+ * Tags are stored as a set of entities by a {@link TagMapper} and can be used in a {@link Filter} as any component.
+ *
+ * @author Jérôme BOULMIER
+ * @see World#getTagMapper(Class)
+ * @since 1.4
+ */
+public abstract class Tag extends Component {
+	private static final long serialVersionUID = -2167021580766624163L;
+}
@@ -0,0 +1,154 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.BitSet;
+
+/**
+ * Mapper of a component without data.
+ * <p>
+ * The mapper only stores the set of entities which have the tag, no component is ever allocated or stored.
+ * {@link #getComponent(int)} always returns null.
+ *
+ * @param <T> tag's class.
+ * @author Jérôme BOULMIER
+ * @see Tag
+ * @see ComponentStorage#TAG
+ * @since 1.4
+ */
+public final class TagMapper<T extends Component> extends ComponentMapper<T> {
+	private static final long serialVersionUID = 4511260434406416950L;
+
+	private transient BitSet serializedEntities;
+
+	TagMapper(Class<T> componentClass) {
+		super(componentClass, null);
+
+		for (Class<?> clazz = componentClass; clazz != Component.class; clazz = clazz.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers())) {
+					throw new IllegalArgumentException(componentClass.getName() + " can't be a tag, it has fields");
+				}
+			}
+		}
+	}
+
+	private TagMapper(TagMapper<T> copy) {
+		this(copy.getComponentClass());
+
+		getEntitiesWithComponent().or(copy.serializedEntities);
+	}
+
+	/**
+	 * Adds the tag to the given entity.
+	 *
+	 * @param entity an existing entity.
+	 */
+	public void add(int entity) {
+		create(entity);
+	}
+
+	/**
+	 * Adds the tag to all the given entities.
+	 *
+	 * @param entities existing entities.
+	 */
+	public void add(BitSet entities) {
+		modified(entities);
+
+		added(entities);
+	}
+
+	/**
+	 * Removes the tag of the given entity.
+	 * The tag is removed at the end of the iteration.
+	 *
+	 * @param entity an existing entity.
+	 */
+	public void remove(int entity) {
+		removeComponent(entity);
+	}
+
+	/**
+	 * Removes the tag of all the given entities.
+	 * Tags are removed at the end of the iteration.
+	 *
+	 * @param entities existing entities.
+	 */
+	public void remove(BitSet entities) {
+		modified(entities);
+
+		removeComponents(entities);
+		fireEvents();
+	}
+
+	/**
+	 * Adds the tag to the given entity.
+	 *
+	 * @param entity an existing entity.
+	 * @return null, tags are never allocated.
+	 */
+	@Override
+	public T create(int entity) {
+		assert (entity >= 0);
+
+		modified(entity);
+
+		added(entity, false);
+
+		return null;
+	}
+
+	@Override
+	void store(int entity, T component) {
+		// Nothing to store.
+	}
+
+	@Override
+	T load(int entity) {
+		return null;
+	}
+
+	@Override
+	void release(int entity) {
+		// Nothing to release.
+	}
+
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.defaultWriteObject();
+		stream.writeObject(getEntitiesWithComponent());
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+		this.serializedEntities = (BitSet) stream.readObject();
+	}
+
+	private Object readResolve() {
+		return new TagMapper<>(this);
+	}
+}
@@ -21,10 +21,10 @@
 
 package org.lomadriel.mentity;
 
-import org.lomadriel.lfc.event.EventDispatcher;
 import org.lomadriel.mentity.util.EventHandler;
 
 import java.util.BitSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -34,28 +34,41 @@ import java.util.Set;
  * @author Jérôme BOULMIER
  * @since 0.1
  */
-public class World implements InternalEventListener {
+public class World {
 	private static final String ENTITY_DOES_NOT_EXIST_MSG = "This entity doesn't exist";
 
 	private final EntityManager entityManager;
 	private final ComponentManager componentManager;
-	private final FilteredSystemManager filteredSystemManager = new FilteredSystemManager(this);
+	private final FilterBackend filteredSystemManager;
 	private final BaseSystem[] systems;
-	private boolean hasToBeFlushed = true;
+	private final ChangeTracker changeTracker;
 
-	World(Set<BaseSystem> systems) {
-		this.entityManager = new EntityManager();
-		this.componentManager = new ComponentManager();
-		this.systems = systems.toArray(new BaseSystem[systems.size()]);
+	World(Set<BaseSystem> systems, WorldBuilder builder) {
+		this(systems, builder, new EntityManager(), new ComponentManager());
+	}
 
-		init();
+	World(Set<BaseSystem> systems, WorldBuilder builder, WorldSave save) {
+		this(systems, builder, save.getEntityManager(), save.getComponentManager());
 	}
 
-	World(Set<BaseSystem> systems, WorldSave save) {
-		this.entityManager = save.getEntityManager();
-		this.componentManager = save.getComponentManager();
+	private World(Set<BaseSystem> systems, WorldBuilder builder,
+	              EntityManager entityManager, ComponentManager componentManager) {
+		this.entityManager = entityManager;
+		this.componentManager = componentManager;
+		this.changeTracker = new ChangeTracker(entityManager);
 		this.systems = systems.toArray(new BaseSystem[systems.size()]);
 
+		EntitySetStorage entitySetStorage = builder.getEntitySetStorage();
+		if (builder.getBackend() == WorldBuilder.Backend.ARCHETYPE) {
+			this.filteredSystemManager = new ArchetypeSystemManager(entityManager, componentManager, entitySetStorage);
+		} else {
+			this.filteredSystemManager = new FilteredSystemManager(entityManager, componentManager, entitySetStorage);
+		}
+
+		builder.getStorages().forEach(this.componentManager::setStorage);
+		builder.configurePools(this.componentManager);
+		this.componentManager.setChangeTracker(this.changeTracker);
+
 		init();
 	}
 
@@ -63,18 +76,112 @@ public class World implements InternalEventListener {
 		this.entityManager.setOnEntityCreated(eventHandler);
 	}
 
+	/**
+	 * Sets the listener called when an entity is created, no event object is built.
+	 *
+	 * @param listener a listener, null to remove the current one.
+	 */
+	public final void setEntityCreatedListener(IntEntityListener listener) {
+		this.entityManager.setEntityCreatedListener(listener);
+	}
+
 	public final void setOnEntityRemoved(EventHandler<EntityEvent> eventHandler) {
 		this.entityManager.setOnEntityRemoved(eventHandler);
 	}
 
+	/**
+	 * Sets the listener called when an entity is destroyed, no event object is built.
+	 *
+	 * @param listener a listener, null to remove the current one.
+	 */
+	public final void setEntityRemovedListener(IntEntityListener listener) {
+		this.entityManager.setEntityRemovedListener(listener);
+	}
+
 	public final void setOnComponentAdded(EventHandler<ComponentEvent> eventHandler) {
 		this.componentManager.setOnComponentAdded(eventHandler);
 	}
 
+	/**
+	 * Sets the listener called when a component is added, no event object is built.
+	 *
+	 * @param listener a listener, null to remove the current one.
+	 */
+	public final void setComponentAddedListener(IntComponentListener listener) {
+		this.componentManager.setComponentAddedListener(listener);
+	}
+
 	public final void setOnComponentRemoved(EventHandler<ComponentEvent> eventHandler) {
 		this.componentManager.setOnComponentRemoved(eventHandler);
 	}
 
+	/**
+	 * Sets the listener called when a component is removed, no event object is built.
+	 *
+	 * @param listener a listener, null to remove the current one.
+	 */
+	public final void setComponentRemovedListener(IntComponentListener listener) {
+		this.componentManager.setComponentRemovedListener(listener);
+	}
+
+	/**
+	 * Subscribes the given listener to the additions of the components of the given type.
+	 * Several listeners can be subscribed to the same type, they are called in subscription order, after the listener
+	 * set by {@link #setComponentAddedListener(IntComponentListener)}.
+	 *
+	 * @param type     type of the component.
+	 * @param listener a listener.
+	 * @throws NullPointerException if the listener is null.
+	 */
+	public void addComponentAddedListener(ComponentType type, IntComponentListener listener) {
+		this.componentManager.addComponentAddedListener(type, listener);
+	}
+
+	/**
+	 * Unsubscribes the given listener from the additions of the components of the given type.
+	 *
+	 * @param type     type of the component.
+	 * @param listener a listener.
+	 * @return {@code true} if the listener was subscribed, {@code false} otherwise.
+	 */
+	public boolean removeComponentAddedListener(ComponentType type, IntComponentListener listener) {
+		return this.componentManager.removeComponentAddedListener(type, listener);
+	}
+
+	/**
+	 * Subscribes the given listener to the removals of the components of the given type.
+	 * Several listeners can be subscribed to the same type, they are called in subscription order, after the listener
+	 * set by {@link #setComponentRemovedListener(IntComponentListener)}.
+	 *
+	 * @param type     type of the component.
+	 * @param listener a listener.
+	 * @throws NullPointerException if the listener is null.
+	 */
+	public void addComponentRemovedListener(ComponentType type, IntComponentListener listener) {
+		this.componentManager.addComponentRemovedListener(type, listener);
+	}
+
+	/**
+	 * Unsubscribes the given listener from the removals of the components of the given type.
+	 *
+	 * @param type     type of the component.
+	 * @param listener a listener.
+	 * @return {@code true} if the listener was subscribed, {@code false} otherwise.
+	 */
+	public boolean removeComponentRemovedListener(ComponentType type, IntComponentListener listener) {
+		return this.componentManager.removeComponentRemovedListener(type, listener);
+	}
+
+	/**
+	 * Sets the listener receiving, at the end of each flush, the entities which received or lost each component.
+	 * Changes are coalesced, an add and a remove of the same component during the same iteration cancel out.
+	 *
+	 * @param listener a listener, null to remove the current one.
+	 */
+	public final void setComponentBatchListener(ComponentBatchListener listener) {
+		this.componentManager.setBatchListener(listener);
+	}
+
 	/**
 	 * Updates the systems using the order of the builder.
 	 *
@@ -95,7 +202,9 @@ public class World implements InternalEventListener {
 	public void reset() {
 		this.entityManager.reset();
 		this.componentManager.reset();
-		this.hasToBeFlushed = true;
+		this.filteredSystemManager.reset();
+		this.changeTracker.clear();
+		this.changeTracker.markDirty();
 	}
 
 	/**
@@ -104,8 +213,10 @@ public class World implements InternalEventListener {
 	 * @return the new entity.
 	 */
 	public int createEntity() {
-		this.hasToBeFlushed = true;
-		return this.entityManager.createEntity();
+		int entity = this.entityManager.createEntity();
+		this.changeTracker.touched(entity);
+
+		return entity;
 	}
 
 	/**
@@ -123,8 +234,50 @@ public class World implements InternalEventListener {
 		return entity;
 	}
 
+	/**
+	 * Creates {@code count} new entities.
+	 *
+	 * @param count number of entities to create.
+	 * @return the new entities.
+	 * @throws IllegalArgumentException if count is negative.
+	 */
+	public int[] createEntities(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("count can't be negative");
+		}
+
+		int[] entities = this.entityManager.createEntities(count);
+		for (int entity : entities) {
+			this.changeTracker.touched(entity);
+		}
+
+		return entities;
+	}
+
+	/**
+	 * Creates {@code count} new entities using the given {@code prefabs}.
+	 * The component events are delivered once all the entities are initialized.
+	 *
+	 * @param count   number of entities to create.
+	 * @param prefabs prefabs used to build the new entities.
+	 * @return the new entities.
+	 * @throws IllegalArgumentException if count is negative.
+	 */
+	public int[] createEntities(int count, Prefabs prefabs) {
+		int[] entities = createEntities(count);
+
+		for (int entity : entities) {
+			prefabs.initialize(this.componentManager, entity);
+		}
+
+		this.componentManager.fireEvents();
+
+		return entities;
+	}
+
 	/**
 	 * Destroys the given {@code entity}.
+	 * Destroying it again before the end of the iteration does nothing.
 	 *
 	 * @param entity an entity
 	 * @throws IllegalArgumentException if the entity doesn't exist.
@@ -134,9 +287,86 @@ public class World implements InternalEventListener {
 			throw new IllegalArgumentException(ENTITY_DOES_NOT_EXIST_MSG);
 		}
 
+		if (this.entityManager.isDestroyed(entity)) {
+			return;
+		}
+
 		this.entityManager.destroyEntity(entity);
 		this.componentManager.removeComponents(entity);
-		this.hasToBeFlushed = true;
+		this.changeTracker.touched(entity);
+	}
+
+	/**
+	 * Returns a handle of the given {@code entity}.
+	 * Unlike the entity id, the handle is never reused once the entity is destroyed.
+	 *
+	 * @param entity an entity
+	 * @return a handle of the given {@code entity}.
+	 * @throws IllegalArgumentException if the entity doesn't exist or has been destroyed.
+	 * @see EntityHandle
+	 */
+	public long getHandle(int entity) {
+		// The generation of a destroyed entity already belongs to the next entity using its id.
+		if (!this.entityManager.entityExists(entity) || this.entityManager.isDestroyed(entity)) {
+			throw new IllegalArgumentException(ENTITY_DOES_NOT_EXIST_MSG);
+		}
+
+		return EntityHandle.of(entity, this.entityManager.getGeneration(entity));
+	}
+
+	/**
+	 * Returns {@code true} if the entity designated by the given {@code handle} hasn't been destroyed.
+	 * <p>
+	 * The entity is considered dead as soon as it is destroyed, not at the end of the iteration.
+	 *
+	 * @param handle an entity handle
+	 * @return {@code true} if the entity of the handle is still alive, {@code false} otherwise.
+	 * @see #getHandle(int)
+	 */
+	public boolean isAlive(long handle) {
+		return this.entityManager.isAlive(handle);
+	}
+
+	/**
+	 * Destroys the given {@code entities}.
+	 *
+	 * @param entities entities to destroy.
+	 * @throws IllegalArgumentException if one of the entities doesn't exist.
+	 */
+	public void destroyEntities(int[] entities) {
+		BitSet entitySet = new BitSet();
+		for (int entity : entities) {
+			if (entity < 0) {
+				throw new IllegalArgumentException(ENTITY_DOES_NOT_EXIST_MSG);
+			}
+
+			entitySet.set(entity);
+		}
+
+		destroyEntities(entitySet);
+	}
+
+	/**
+	 * Destroys the given {@code entities}.
+	 * The entities already destroyed during this iteration are ignored.
+	 *
+	 * @param entities entities to destroy.
+	 * @throws IllegalArgumentException if one of the entities doesn't exist.
+	 */
+	public void destroyEntities(BitSet entities) {
+		if (!this.entityManager.entitiesExist(entities)) {
+			throw new IllegalArgumentException(ENTITY_DOES_NOT_EXIST_MSG);
+		}
+
+		BitSet destroyed = (BitSet) entities.clone();
+		this.entityManager.removeDestroyed(destroyed);
+		if (destroyed.isEmpty()) {
+			return;
+		}
+
+		this.entityManager.destroyEntities(destroyed);
+		this.componentManager.removeComponents(destroyed);
+		this.changeTracker.touched(destroyed);
 	}
 
 	/**
@@ -156,7 +386,6 @@ public class World implements InternalEventListener {
 		}
 
 		this.componentManager.addComponent(entity, componentClass, component, false);
-		this.hasToBeFlushed = true;
 	}
 
 	/**
@@ -171,6 +400,77 @@ public class World implements InternalEventListener {
 		return this.componentManager.hasComponent(entity, componentClass);
 	}
 
+	/**
+	 * Returns {@code true} if the given {@code entity} has a component of the given type.
+	 *
+	 * @param entity an entity
+	 * @param type   component's type
+	 * @return {@code true} if the given {@code entity} has a component of the given type, false otherwise.
+	 */
+	public boolean hasComponent(int entity, ComponentType type) {
+		return this.componentManager.hasComponent(entity, type);
+	}
+
+	/**
+	 * Returns a live and read-only view of the entities matching the given {@code filter}.
+	 * <p>
+	 * The query is cached: the entities are computed once, then maintained on each flush like the entities of the
+	 * filtered systems, and the same query is returned for equal filters.
+	 *
+	 * @param filter a filter.
+	 * @return the query of the filter.
+	 * @throws NullPointerException if the filter is null.
+	 */
+	public Query query(Filter filter) {
+		if (filter == null) {
+			throw new NullPointerException("filter can't be null");
+		}
+
+		return this.filteredSystemManager.query(filter);
+	}
+
+	/**
+	 * Returns a description of the plan used to update the entities of the filtered systems, for debugging purposes.
+	 * Each line is a node of the plan with the number of filters sharing it and its cost. With the archetype backend,
+	 * each line is an archetype with its number of entities and the filters it matches.
+	 *
+	 * @return a description of the plan.
+	 */
+	public String dumpFilterPlan() {
+		return this.filteredSystemManager.dumpPlan();
+	}
+
+	/**
+	 * Returns the number of filter updates done since the creation of the world.
+	 *
+	 * @return the number of filter updates done.
+	 */
+	public long getFilterUpdateCount() {
+		return this.filteredSystemManager.getUpdates();
+	}
+
+	/**
+	 * Returns the number of filter updates skipped since the creation of the world, because neither the entities nor
+	 * the components used by the filter changed.
+	 *
+	 * @return the number of filter updates skipped.
+	 */
+	public long getSkippedFilterUpdateCount() {
+		return this.filteredSystemManager.getSkippedUpdates();
+	}
+
+	/**
+	 * Returns the ids of the component types of the given {@code entity}.
+	 * A component is part of the signature until its removal is flushed.
+	 *
+	 * @param entity an entity
+	 * @return the ids of the component types of the entity, must not be modified.
+	 * @see ComponentType#getId()
+	 */
+	public BitSet getSignature(int entity) {
+		return this.componentManager.getSignature(entity);
+	}
+
 	/**
 	 * Returns true if the given entity has the component and the component isn't marked for deletion, false otherwise.
 	 *
@@ -200,7 +500,6 @@ public class World implements InternalEventListener {
 		}
 
 		this.componentManager.removeComponent(entity, componentClass, false);
-		this.hasToBeFlushed = true;
 	}
 
 	/**
@@ -214,6 +513,124 @@ public class World implements InternalEventListener {
 		return this.componentManager.getMapper(componentClass);
 	}
 
+	/**
+	 * Gets the component mapper of the given type if it exists.
+	 *
+	 * @param type component's type
+	 * @return the component mapper of the given type, null if no component of this type has been used yet.
+	 */
+	public ComponentMapper<?> getMapper(ComponentType type) {
+		return this.componentManager.getMapper(type);
+	}
+
+	/**
+	 * Gets the packed component mapper.
+	 *
+	 * @param componentClass component's class
+	 * @param <T>            component's class
+	 * @return the packed component mapper of the given {@code component}.
+	 * @throws IllegalArgumentException if the component isn't stored with {@link ComponentStorage#PACKED}.
+	 * @see WorldBuilder#setStorage(Class, ComponentStorage)
+	 */
+	public <T extends Component> PackedComponentMapper<T> getPackedMapper(Class<T> componentClass) {
+		ComponentMapper<T> mapper = this.componentManager.getMapper(componentClass);
+		if (!(mapper instanceof PackedComponentMapper)) {
+			throw new IllegalArgumentException(componentClass.getName() + " isn't packed");
+		}
+
+		return (PackedComponentMapper<T>) mapper;
+	}
+
+	/**
+	 * Gets the off-heap component mapper.
+	 *
+	 * @param componentClass component's class
+	 * @param <T>            component's class
+	 * @return the off-heap component mapper of the given {@code component}.
+	 * @throws IllegalArgumentException if the component isn't stored with {@link ComponentStorage#OFF_HEAP}.
+	 * @see WorldBuilder#setStorage(Class, ComponentStorage)
+	 */
+	public <T extends Component> OffHeapComponentMapper<T> getOffHeapMapper(Class<T> componentClass) {
+		ComponentMapper<T> mapper = this.componentManager.getMapper(componentClass);
+		if (!(mapper instanceof OffHeapComponentMapper)) {
+			throw new IllegalArgumentException(componentClass.getName() + " isn't off-heap");
+		}
+
+		return (OffHeapComponentMapper<T>) mapper;
+	}
+
+	/**
+	 * Gets the tag mapper.
+	 *
+	 * @param tagClass tag's class
+	 * @param <T>      tag's class
+	 * @return the tag mapper of the given {@code tag}.
+	 * @throws IllegalArgumentException if the tag isn't stored with {@link ComponentStorage#TAG}.
+	 */
+	public <T extends Component> TagMapper<T> getTagMapper(Class<T> tagClass) {
+		ComponentMapper<T> mapper = this.componentManager.getMapper(tagClass);
+		if (!(mapper instanceof TagMapper)) {
+			throw new IllegalArgumentException(tagClass.getName() + " isn't a tag");
+		}
+
+		return (TagMapper<T>) mapper;
+	}
+
+	/**
+	 * Gets the shared component mapper.
+	 *
+	 * @param componentClass component's class
+	 * @param <T>            component's class
+	 * @return the shared component mapper of the given {@code component}.
+	 * @throws IllegalArgumentException if the component isn't stored with {@link ComponentStorage#SHARED}.
+	 * @see WorldBuilder#setStorage(Class, ComponentStorage)
+	 */
+	public <T extends Component> SharedComponentMapper<T> getSharedMapper(Class<T> componentClass) {
+		ComponentMapper<T> mapper = this.componentManager.getMapper(componentClass);
+		if (!(mapper instanceof SharedComponentMapper)) {
+			throw new IllegalArgumentException(componentClass.getName() + " isn't shared");
+		}
+
+		return (SharedComponentMapper<T>) mapper;
+	}
+
+	/**
+	 * Gets the sparse component mapper.
+	 *
+	 * @param componentClass component's class
+	 * @param <T>            component's class
+	 * @return the sparse component mapper of the given {@code component}.
+	 * @throws IllegalArgumentException if the component isn't stored with {@link ComponentStorage#SPARSE}.
+	 * @see WorldBuilder#setStorage(Class, ComponentStorage)
+	 */
+	public <T extends Component> SparseComponentMapper<T> getSparseMapper(Class<T> componentClass) {
+		ComponentMapper<T> mapper = this.componentManager.getMapper(componentClass);
+		if (!(mapper instanceof SparseComponentMapper)) {
+			throw new IllegalArgumentException(componentClass.getName() + " isn't sparse");
+		}
+
+		return (SparseComponentMapper<T>) mapper;
+	}
+
+	/**
+	 * Returns the archetypes of the entities matching the given {@code filter}.
+	 * Archetypes are updated at the end of each iteration, the ones left empty are dropped.
+	 * <p>
+	 * The chunks of an archetype only hold entity ids. Component data stays in the mapper of each component type,
+	 * it isn't stored alongside the entities of the archetype.
+	 *
+	 * @param filter a filter.
+	 * @return the non-empty archetypes matching the filter.
+	 * @throws IllegalStateException if the world doesn't use {@link WorldBuilder.Backend#ARCHETYPE}.
+	 */
+	public List<Archetype> getArchetypes(Filter filter) {
+		if (!(this.filteredSystemManager instanceof ArchetypeSystemManager)) {
+			throw new IllegalStateException("The world doesn't use archetypes");
+		}
+
+		return ((ArchetypeSystemManager) this.filteredSystemManager).getArchetypes(filter);
+	}
+
 	/**
 	 * Gets all mappers.
 	 *
@@ -241,27 +658,11 @@ public class World implements InternalEventListener {
 		return new WorldSave(this.entityManager.clone(), this.componentManager.clone());
 	}
 
-	/**
-	 * Internal API.
-	 *
-	 * @param event internal event.
-	 */
-	@Override
-	public void handleComponentModification(InternalEvent event) {
-		if (!this.entityManager.entityExists(event.getEntity())) {
-			throw new IllegalArgumentException(ENTITY_DOES_NOT_EXIST_MSG);
-		}
-
-		this.hasToBeFlushed = true;
-	}
-
 	void registerFilteredEntitySystem(FilteredSystem filteredEntitySystem) {
 		this.filteredSystemManager.register(filteredEntitySystem);
 	}
 
 	private void init() {
-		EventDispatcher.getInstance().addListener(InternalEvent.class, this);
-
 		for (BaseSystem system : this.systems) {
 			system.setWorld(this);
 			system.setup();
@@ -275,11 +676,12 @@ public class World implements InternalEventListener {
 	}
 
 	private void flush() {
-		if (this.hasToBeFlushed) {
+		if (this.changeTracker.isDirty()) {
 			this.entityManager.flush();
 			this.componentManager.flush();
-			this.filteredSystemManager.updateAll();
-			this.hasToBeFlushed = false;
+			this.filteredSystemManager.updateAll(this.changeTracker.getModifiedEntities());
+			this.changeTracker.clear();
+			this.componentManager.fireBatches();
 		}
 	}
 }
@@ -22,7 +22,9 @@
 package org.lomadriel.mentity;
 
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.PriorityQueue;
 import java.util.Queue;
@@ -52,6 +54,23 @@ public class WorldBuilder {
 		HIGHEST
 	}
 
+	/**
+	 * Backend used by the world to match the entities with the filters.
+	 */
+	public enum Backend {
+		/**
+		 * Filters are evaluated on the whole world with bitset operations.
+		 */
+		BITSET,
+
+		/**
+		 * Entities are grouped by set of components, filters are matched once per archetype.
+		 *
+		 * @see Archetype
+		 */
+		ARCHETYPE
+	}
+
 
 	private class Node {
 		final BaseSystem system;
@@ -81,6 +100,10 @@ public class WorldBuilder {
 			= ((o1, o2) -> o2.priority.ordinal() - o1.priority.ordinal());
 
 	private final Queue<Node> systems = new PriorityQueue<>(NODE_COMPARATOR);
+	private final Map<Class<? extends Component>, ComponentStorage> storages = new HashMap<>();
+	private final Map<Class<? extends Component>, ComponentPool<? extends Component>> pools = new HashMap<>();
+	private Backend backend = Backend.BITSET;
+	private EntitySetStorage entitySetStorage = EntitySetStorage.BITSET;
 
 	/**
 	 * Adds a {@code system} in the {@code World} with the default priority.
@@ -127,6 +150,91 @@ public class WorldBuilder {
 		return this;
 	}
 
+	/**
+	 * Sets the {@code storage} used by the mapper of the given {@code componentClass}.
+	 * Components without a storage use {@link ComponentStorage#DEFAULT}.
+	 *
+	 * @param componentClass component's class
+	 * @param storage        storage of the component
+	 * @return itself
+	 * @throws NullPointerException     if the component class or the storage is null.
+	 * @throws IllegalArgumentException if the component can't be stored with this storage.
+	 */
+	public WorldBuilder setStorage(Class<? extends Component> componentClass, ComponentStorage storage) {
+		if (componentClass == null) {
+			throw new NullPointerException("componentClass can't be null");
+		}
+
+		if (storage == null) {
+			throw new NullPointerException("storage can't be null");
+		}
+
+		// Fails fast if the component doesn't match the storage.
+		storage.createMapper(componentClass);
+
+		this.storages.put(componentClass, storage);
+
+		return this;
+	}
+
+	/**
+	 * Sets the {@code pool} used by the mapper of the given {@code componentClass}.
+	 * The pool is used by {@link ComponentMapper#create(int)} and receives the components removed from the world.
+	 *
+	 * @param componentClass component's class
+	 * @param pool           pool of the component
+	 * @param <T>            component's class
+	 * @return itself
+	 * @throws NullPointerException if the component class or the pool is null.
+	 */
+	public <T extends Component> WorldBuilder setPool(Class<T> componentClass, ComponentPool<T> pool) {
+		if (componentClass == null) {
+			throw new NullPointerException("componentClass can't be null");
+		}
+
+		if (pool == null) {
+			throw new NullPointerException("pool can't be null");
+		}
+
+		this.pools.put(componentClass, pool);
+
+		return this;
+	}
+
+	/**
+	 * Sets the {@code backend} of the world, {@link Backend#BITSET} by default.
+	 *
+	 * @param backend backend of the world
+	 * @return itself
+	 * @throws NullPointerException if the backend is null.
+	 */
+	public WorldBuilder setBackend(Backend backend) {
+		if (backend == null) {
+			throw new NullPointerException("backend can't be null");
+		}
+
+		this.backend = backend;
+
+		return this;
+	}
+
+	/**
+	 * Sets the {@code storage} of the entities of the filtered systems, {@link EntitySetStorage#BITSET} by default.
+	 *
+	 * @param storage storage of the entities of the filtered systems
+	 * @return itself
+	 * @throws NullPointerException if the storage is null.
+	 */
+	public WorldBuilder setEntitySetStorage(EntitySetStorage storage) {
+		if (storage == null) {
+			throw new NullPointerException("storage can't be null");
+		}
+
+		this.entitySetStorage = storage;
+
+		return this;
+	}
+
 	/**
 	 * Builds the world.
 	 *
@@ -137,7 +245,7 @@ public class WorldBuilder {
 				.map(node -> node.system)
 				.collect(Collectors.toCollection(LinkedHashSet::new));
 
-		return new World(systems);
+		return new World(systems, this);
 	}
 
 	/**
@@ -150,6 +258,25 @@ public class WorldBuilder {
 				.map(node -> node.system)
 				.collect(Collectors.toCollection(LinkedHashSet::new));
 
-		return new World(systems, save);
+		return new World(systems, this, save);
+	}
+
+	Map<Class<? extends Component>, ComponentStorage> getStorages() {
+		return this.storages;
+	}
+
+	Backend getBackend() {
+		return this.backend;
+	}
+
+	EntitySetStorage getEntitySetStorage() {
+		return this.entitySetStorage;
+	}
+
+	@SuppressWarnings("unchecked")
+	void configurePools(ComponentManager componentManager) {
+		for (Map.Entry<Class<? extends Component>, ComponentPool<? extends Component>> entry : this.pools.entrySet()) {
+			componentManager.setPool((Class<Component>) entry.getKey(), (ComponentPool<Component>) entry.getValue());
+		}
 	}
 }
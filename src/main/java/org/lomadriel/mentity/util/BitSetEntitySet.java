@@ -0,0 +1,134 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity.util;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of entities backed by a {@code BitSet}.
+ * <p>
+ * Uses one bit per entity up to the greatest one, well suited when the entities are dense.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+public class BitSetEntitySet implements EntitySet {
+	private final BitSet entities = new BitSet();
+
+	@Override
+	public void add(int entity) {
+		this.entities.set(entity);
+	}
+
+	@Override
+	public void remove(int entity) {
+		this.entities.clear(entity);
+	}
+
+	@Override
+	public boolean contains(int entity) {
+		return this.entities.get(entity);
+	}
+
+	@Override
+	public int nextEntity(int fromEntity) {
+		return this.entities.nextSetBit(fromEntity);
+	}
+
+	@Override
+	public void forEach(IntConsumer consumer) {
+		for (int entity = this.entities.nextSetBit(0); entity != -1; entity = this.entities.nextSetBit(entity + 1)) {
+			consumer.accept(entity);
+		}
+	}
+
+	@Override
+	public int cardinality() {
+		return this.entities.cardinality();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.entities.isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		this.entities.clear();
+	}
+
+	@Override
+	public void or(BitSet entities) {
+		this.entities.or(entities);
+	}
+
+	@Override
+	public void andNot(BitSet entities) {
+		this.entities.andNot(entities);
+	}
+
+	@Override
+	public void intersect(BitSet entities, BitSet result) {
+		for (int entity = entities.nextSetBit(0); entity != -1; entity = entities.nextSetBit(entity + 1)) {
+			if (this.entities.get(entity)) {
+				result.set(entity);
+			}
+		}
+	}
+
+	@Override
+	public void or(EntitySet entities) {
+		if (entities instanceof BitSetEntitySet) {
+			this.entities.or(((BitSetEntitySet) entities).entities);
+		} else {
+			entities.forEach(this.entities::set);
+		}
+	}
+
+	@Override
+	public void and(EntitySet entities) {
+		if (entities instanceof BitSetEntitySet) {
+			this.entities.and(((BitSetEntitySet) entities).entities);
+		} else {
+			for (int entity = this.entities.nextSetBit(0); entity != -1; entity = this.entities.nextSetBit(entity + 1)) {
+				if (!entities.contains(entity)) {
+					this.entities.clear(entity);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void andNot(EntitySet entities) {
+		if (entities instanceof BitSetEntitySet) {
+			this.entities.andNot(((BitSetEntitySet) entities).entities);
+		} else {
+			entities.forEach(this.entities::clear);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.entities.toString();
+	}
+}
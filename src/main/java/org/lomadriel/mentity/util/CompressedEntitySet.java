@@ -0,0 +1,676 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of entities, in the style of Roaring bitmaps.
+ * <p>
+ * The entities are split in chunks of 65536 by their 16 high bits. Each non-empty chunk is a container storing the
+ * 16 low bits, either as a sorted array when it holds at most 4096 entities or as a bitmap otherwise.
+ * The memory used depends on the number of entities rather than on the greatest one, and the bulk operations only
+ * visit the chunks present in both operands.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+public class CompressedEntitySet implements EntitySet {
+	/**
+	 * Greatest number of values of an array container.
+	 */
+	private static final int ARRAY_MAX_SIZE = 4096;
+	private static final int BITMAP_WORDS = 1 << 10;
+
+	private char[] keys = new char[4];
+	private Container[] containers = new Container[4];
+	private int size;
+
+	/**
+	 * Sorted values of the chunk being built by {@link #or(BitSet)}.
+	 */
+	private char[] buffer = new char[16];
+
+	@Override
+	public void add(int entity) {
+		int index = indexOf(entity >>> 16);
+		if (index < 0) {
+			index = -index - 1;
+			insert(index, (char) (entity >>> 16), new ArrayContainer());
+		}
+
+		this.containers[index] = this.containers[index].add((char) entity);
+	}
+
+	@Override
+	public void remove(int entity) {
+		int index = indexOf(entity >>> 16);
+		if (index < 0) {
+			return;
+		}
+
+		Container container = this.containers[index].remove((char) entity);
+		if (container.cardinality() == 0) {
+			System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+			System.arraycopy(this.containers, index + 1, this.containers, index, this.size - index - 1);
+			this.containers[--this.size] = null;
+		} else {
+			this.containers[index] = container;
+		}
+	}
+
+	@Override
+	public boolean contains(int entity) {
+		int index = indexOf(entity >>> 16);
+
+		return index >= 0 && this.containers[index].contains((char) entity);
+	}
+
+	@Override
+	public int nextEntity(int fromEntity) {
+		if (fromEntity < 0) {
+			throw new IndexOutOfBoundsException("fromEntity < 0: " + fromEntity);
+		}
+
+		int index = indexOf(fromEntity >>> 16);
+		if (index >= 0) {
+			int value = this.containers[index].next(fromEntity & 0xFFFF);
+			if (value != -1) {
+				return this.keys[index] << 16 | value;
+			}
+
+			index++;
+		} else {
+			index = -index - 1;
+		}
+
+		if (index == this.size) {
+			return -1;
+		}
+
+		// Containers are never empty.
+		return this.keys[index] << 16 | this.containers[index].next(0);
+	}
+
+	@Override
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < this.size; i++) {
+			this.containers[i].forEach(this.keys[i] << 16, consumer);
+		}
+	}
+
+	@Override
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < this.size; i++) {
+			cardinality += this.containers[i].cardinality();
+		}
+
+		return cardinality;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.containers, 0, this.size, null);
+		this.size = 0;
+	}
+
+	@Override
+	public void or(BitSet entities) {
+		int entity = entities.nextSetBit(0);
+		while (entity != -1) {
+			int key = entity >>> 16;
+
+			int count = 0;
+			do {
+				if (count == this.buffer.length) {
+					this.buffer = Arrays.copyOf(this.buffer, count * 2);
+				}
+
+				this.buffer[count++] = (char) entity;
+				entity = entities.nextSetBit(entity + 1);
+			} while (entity != -1 && entity >>> 16 == key);
+
+			Container chunk = count > ARRAY_MAX_SIZE
+					? BitmapContainer.of(this.buffer, count)
+					: new ArrayContainer(Arrays.copyOf(this.buffer, count), count);
+
+			int index = indexOf(key);
+			if (index < 0) {
+				insert(-index - 1, (char) key, chunk);
+			} else {
+				this.containers[index] = this.containers[index].or(chunk);
+			}
+		}
+	}
+
+	@Override
+	public void andNot(BitSet entities) {
+		int kept = 0;
+		int entity = entities.nextSetBit(0);
+
+		for (int i = 0; i < this.size; i++) {
+			int key = this.keys[i];
+			Container container = this.containers[i];
+
+			if (entity != -1 && entity >>> 16 < key) {
+				entity = entities.nextSetBit(key << 16);
+			}
+
+			while (entity != -1 && entity >>> 16 == key) {
+				container = container.remove((char) entity);
+				entity = entities.nextSetBit(entity + 1);
+			}
+
+			kept = keep(kept, i, container);
+		}
+
+		truncate(kept);
+	}
+
+	@Override
+	public void intersect(BitSet entities, BitSet result) {
+		int entity = entities.nextSetBit(0);
+
+		for (int i = 0; i < this.size; i++) {
+			int key = this.keys[i];
+			Container container = this.containers[i];
+
+			if (entity != -1 && entity >>> 16 < key) {
+				entity = entities.nextSetBit(key << 16);
+			}
+
+			while (entity != -1 && entity >>> 16 == key) {
+				if (container.contains((char) entity)) {
+					result.set(entity);
+				}
+
+				entity = entities.nextSetBit(entity + 1);
+			}
+		}
+	}
+
+	@Override
+	public void or(EntitySet entities) {
+		if (!(entities instanceof CompressedEntitySet)) {
+			entities.forEach(this::add);
+			return;
+		}
+
+		CompressedEntitySet other = (CompressedEntitySet) entities;
+		for (int i = 0; i < other.size; i++) {
+			int index = indexOf(other.keys[i]);
+			if (index < 0) {
+				insert(-index - 1, other.keys[i], other.containers[i].copy());
+			} else {
+				this.containers[index] = this.containers[index].or(other.containers[i]);
+			}
+		}
+	}
+
+	@Override
+	public void and(EntitySet entities) {
+		if (!(entities instanceof CompressedEntitySet)) {
+			for (int entity = nextEntity(0); entity != -1; entity = nextEntity(entity + 1)) {
+				if (!entities.contains(entity)) {
+					remove(entity);
+				}
+			}
+
+			return;
+		}
+
+		CompressedEntitySet other = (CompressedEntitySet) entities;
+		int kept = 0;
+
+		for (int i = 0, j = 0; i < this.size; i++) {
+			while (j < other.size && other.keys[j] < this.keys[i]) {
+				j++;
+			}
+
+			if (j < other.size && other.keys[j] == this.keys[i]) {
+				kept = keep(kept, i, this.containers[i].and(other.containers[j]));
+			}
+		}
+
+		truncate(kept);
+	}
+
+	@Override
+	public void andNot(EntitySet entities) {
+		if (!(entities instanceof CompressedEntitySet)) {
+			entities.forEach(this::remove);
+			return;
+		}
+
+		CompressedEntitySet other = (CompressedEntitySet) entities;
+		int kept = 0;
+
+		for (int i = 0, j = 0; i < this.size; i++) {
+			while (j < other.size && other.keys[j] < this.keys[i]) {
+				j++;
+			}
+
+			Container container = this.containers[i];
+			if (j < other.size && other.keys[j] == this.keys[i]) {
+				container = container.andNot(other.containers[j]);
+			}
+
+			kept = keep(kept, i, container);
+		}
+
+		truncate(kept);
+	}
+
+	@Override
+	public String toString() {
+		StringJoiner joiner = new StringJoiner(", ", "{", "}");
+		forEach(entity -> joiner.add(Integer.toString(entity)));
+
+		return joiner.toString();
+	}
+
+	private int indexOf(int key) {
+		return Arrays.binarySearch(this.keys, 0, this.size, (char) key);
+	}
+
+	private void insert(int index, char key, Container container) {
+		if (this.size == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, this.size * 2);
+			this.containers = Arrays.copyOf(this.containers, this.size * 2);
+		}
+
+		System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+		System.arraycopy(this.containers, index, this.containers, index + 1, this.size - index);
+		this.keys[index] = key;
+		this.containers[index] = container;
+		this.size++;
+	}
+
+	/**
+	 * Moves the container at {@code index} to {@code kept} unless it is empty.
+	 *
+	 * @return the number of containers kept.
+	 */
+	private int keep(int kept, int index, Container container) {
+		if (container.cardinality() == 0) {
+			return kept;
+		}
+
+		this.keys[kept] = this.keys[index];
+		this.containers[kept] = container;
+
+		return kept + 1;
+	}
+
+	private void truncate(int size) {
+		Arrays.fill(this.containers, size, this.size, null);
+		this.size = size;
+	}
+
+	/**
+	 * Low 16 bits of the entities of a chunk.
+	 * The operations may update the container or return a new one.
+	 */
+	private abstract static class Container {
+		abstract int cardinality();
+
+		abstract boolean contains(char value);
+
+		abstract Container add(char value);
+
+		abstract Container remove(char value);
+
+		/**
+		 * Returns the first value greater than or equal to {@code from}, or {@code -1}.
+		 */
+		abstract int next(int from);
+
+		abstract void forEach(int base, IntConsumer consumer);
+
+		abstract Container or(Container other);
+
+		abstract Container and(Container other);
+
+		abstract Container andNot(Container other);
+
+		abstract Container copy();
+	}
+
+	private static final class ArrayContainer extends Container {
+		private char[] values;
+		private int size;
+
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		ArrayContainer(char[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		@Override
+		int cardinality() {
+			return this.size;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(this.values, 0, this.size, value) >= 0;
+		}
+
+		@Override
+		Container add(char value) {
+			int index = Arrays.binarySearch(this.values, 0, this.size, value);
+			if (index >= 0) {
+				return this;
+			}
+
+			if (this.size == ARRAY_MAX_SIZE) {
+				return BitmapContainer.of(this.values, this.size).add(value);
+			}
+
+			index = -index - 1;
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, Math.min(this.size * 2, ARRAY_MAX_SIZE));
+			}
+
+			System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
+			this.values[index] = value;
+			this.size++;
+
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			int index = Arrays.binarySearch(this.values, 0, this.size, value);
+			if (index >= 0) {
+				System.arraycopy(this.values, index + 1, this.values, index, this.size - index - 1);
+				this.size--;
+			}
+
+			return this;
+		}
+
+		@Override
+		int next(int from) {
+			int index = Arrays.binarySearch(this.values, 0, this.size, (char) from);
+			if (index < 0) {
+				index = -index - 1;
+			}
+
+			return index < this.size ? this.values[index] : -1;
+		}
+
+		@Override
+		void forEach(int base, IntConsumer consumer) {
+			for (int i = 0; i < this.size; i++) {
+				consumer.accept(base | this.values[i]);
+			}
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof BitmapContainer) {
+				Container result = other.copy();
+				for (int i = 0; i < this.size; i++) {
+					result.add(this.values[i]);
+				}
+
+				return result;
+			}
+
+			ArrayContainer array = (ArrayContainer) other;
+			char[] merged = new char[this.size + array.size];
+			int count = 0;
+			int i = 0;
+			int j = 0;
+
+			while (i < this.size && j < array.size) {
+				char a = this.values[i];
+				char b = array.values[j];
+
+				if (a <= b) {
+					i++;
+				}
+
+				if (b <= a) {
+					j++;
+				}
+
+				merged[count++] = a <= b ? a : b;
+			}
+
+			while (i < this.size) {
+				merged[count++] = this.values[i++];
+			}
+
+			while (j < array.size) {
+				merged[count++] = array.values[j++];
+			}
+
+			return count > ARRAY_MAX_SIZE ? BitmapContainer.of(merged, count) : new ArrayContainer(merged, count);
+		}
+
+		@Override
+		Container and(Container other) {
+			int count = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (other.contains(this.values[i])) {
+					this.values[count++] = this.values[i];
+				}
+			}
+
+			this.size = count;
+
+			return this;
+		}
+
+		@Override
+		Container andNot(Container other) {
+			int count = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (!other.contains(this.values[i])) {
+					this.values[count++] = this.values[i];
+				}
+			}
+
+			this.size = count;
+
+			return this;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(this.values, Math.max(this.size, 1)), this.size);
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+		private final long[] words;
+		private int cardinality;
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		static BitmapContainer of(char[] values, int size) {
+			long[] words = new long[BITMAP_WORDS];
+			for (int i = 0; i < size; i++) {
+				words[values[i] >>> 6] |= 1L << values[i];
+			}
+
+			return new BitmapContainer(words, size);
+		}
+
+		@Override
+		int cardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (this.words[value >>> 6] & 1L << value) != 0;
+		}
+
+		@Override
+		Container add(char value) {
+			if (!contains(value)) {
+				this.words[value >>> 6] |= 1L << value;
+				this.cardinality++;
+			}
+
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			if (contains(value)) {
+				this.words[value >>> 6] &= ~(1L << value);
+				this.cardinality--;
+			}
+
+			return this.cardinality > ARRAY_MAX_SIZE ? this : toArray();
+		}
+
+		@Override
+		int next(int from) {
+			int index = from >>> 6;
+			long word = this.words[index] & -1L << from;
+
+			while (word == 0) {
+				if (++index == BITMAP_WORDS) {
+					return -1;
+				}
+
+				word = this.words[index];
+			}
+
+			return index << 6 | Long.numberOfTrailingZeros(word);
+		}
+
+		@Override
+		void forEach(int base, IntConsumer consumer) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = this.words[i];
+
+				while (word != 0) {
+					consumer.accept(base | i << 6 | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) other;
+				for (int i = 0; i < array.size; i++) {
+					add(array.values[i]);
+				}
+
+				return this;
+			}
+
+			long[] words = ((BitmapContainer) other).words;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				this.words[i] |= words[i];
+			}
+
+			return recount();
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.copy().and(this);
+			}
+
+			long[] words = ((BitmapContainer) other).words;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				this.words[i] &= words[i];
+			}
+
+			return recount();
+		}
+
+		@Override
+		Container andNot(Container other) {
+			if (other instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) other;
+				for (int i = 0; i < array.size; i++) {
+					this.words[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+				}
+			} else {
+				long[] words = ((BitmapContainer) other).words;
+				for (int i = 0; i < BITMAP_WORDS; i++) {
+					this.words[i] &= ~words[i];
+				}
+			}
+
+			return recount();
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(this.words.clone(), this.cardinality);
+		}
+
+		private Container recount() {
+			int cardinality = 0;
+			for (long word : this.words) {
+				cardinality += Long.bitCount(word);
+			}
+
+			this.cardinality = cardinality;
+
+			return cardinality > ARRAY_MAX_SIZE ? this : toArray();
+		}
+
+		private ArrayContainer toArray() {
+			char[] values = new char[Math.max(this.cardinality, 1)];
+			int count = 0;
+
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = this.words[i];
+
+				while (word != 0) {
+					values[count++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+
+			return new ArrayContainer(values, count);
+		}
+	}
+}
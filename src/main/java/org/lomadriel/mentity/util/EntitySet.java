@@ -0,0 +1,138 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity.util;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of entities.
+ * <p>
+ * The bulk operations take either another entity set or a {@code BitSet}, such as the entities modified since the last
+ * flush of a world. Their cost depends on the implementation.
+ *
+ * @author Jérôme BOULMIER
+ * @see BitSetEntitySet
+ * @see CompressedEntitySet
+ * @since 1.4
+ */
+public interface EntitySet {
+	/**
+	 * Adds the given entity to this set.
+	 *
+	 * @param entity an entity.
+	 */
+	void add(int entity);
+
+	/**
+	 * Removes the given entity from this set.
+	 *
+	 * @param entity an entity.
+	 */
+	void remove(int entity);
+
+	/**
+	 * Returns true if this set contains the given entity.
+	 *
+	 * @param entity an entity.
+	 * @return {@code true} if this set contains the entity.
+	 */
+	boolean contains(int entity);
+
+	/**
+	 * Returns the first entity of this set greater than or equal to the given one.
+	 *
+	 * @param fromEntity first entity to check.
+	 * @return the next entity or {@code -1} if there is none.
+	 */
+	int nextEntity(int fromEntity);
+
+	/**
+	 * Calls the given consumer for each entity of this set, in ascending order.
+	 *
+	 * @param consumer consumer of the entities.
+	 */
+	void forEach(IntConsumer consumer);
+
+	/**
+	 * Returns the number of entities in this set.
+	 *
+	 * @return the number of entities.
+	 */
+	int cardinality();
+
+	/**
+	 * Returns true if this set doesn't contain any entity.
+	 *
+	 * @return {@code true} if this set is empty.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Removes all the entities of this set.
+	 */
+	void clear();
+
+	/**
+	 * Adds the given entities to this set.
+	 *
+	 * @param entities entities to add.
+	 */
+	void or(BitSet entities);
+
+	/**
+	 * Removes the given entities from this set.
+	 *
+	 * @param entities entities to remove.
+	 */
+	void andNot(BitSet entities);
+
+	/**
+	 * Sets in {@code result} the entities of this set which are also in {@code entities}.
+	 * The other entities of {@code result} are left untouched.
+	 *
+	 * @param entities entities to look for.
+	 * @param result   receives the entities found in this set.
+	 */
+	void intersect(BitSet entities, BitSet result);
+
+	/**
+	 * Adds the entities of the given set to this set.
+	 *
+	 * @param entities entities to add.
+	 */
+	void or(EntitySet entities);
+
+	/**
+	 * Keeps only the entities of this set which are also in the given set.
+	 *
+	 * @param entities entities to keep.
+	 */
+	void and(EntitySet entities);
+
+	/**
+	 * Removes the entities of the given set from this set.
+	 *
+	 * @param entities entities to remove.
+	 */
+	void andNot(EntitySet entities);
+}
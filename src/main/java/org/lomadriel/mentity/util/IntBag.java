@@ -0,0 +1,169 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Auto-resizable array of primitive {@code int}.
+ * <p>
+ * Can be used either as a random access array (see {@link #get(int)} and {@link #set(int, int)})
+ * or as a stack (see {@link #add(int)} and {@link #pop()}).
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+public class IntBag implements Serializable {
+	private static final long serialVersionUID = -4290347529453911218L;
+
+	/**
+	 * Elements of this collection.
+	 * {@link #writeObject(ObjectOutputStream)} and {@link #readObject(ObjectInputStream)}
+	 */
+	private transient int[] elements;
+	private int size;
+
+	public IntBag() {
+		this(16);
+	}
+
+	public IntBag(int capacity) {
+		this.elements = new int[capacity];
+	}
+
+	/**
+	 * Returns the element at the specified position.
+	 *
+	 * @param index index of the element to return.
+	 * @return the element at the specified position, 0 if the index is greater than the capacity.
+	 * @throws ArrayIndexOutOfBoundsException if index is negative.
+	 */
+	public int get(int index) {
+		if (index >= this.elements.length) {
+			return 0;
+		}
+
+		return this.elements[index];
+	}
+
+	/**
+	 * Sets the element at the specified position.
+	 *
+	 * @param index index of the element to set.
+	 * @param value value of the element.
+	 * @throws ArrayIndexOutOfBoundsException if index is negative.
+	 */
+	public void set(int index, int value) {
+		if (index >= this.size) {
+			this.size = index + 1;
+
+			ensureCapacity(index);
+		}
+
+		this.elements[index] = value;
+	}
+
+	/**
+	 * Appends the given value at the end of this collection.
+	 *
+	 * @param value value to append.
+	 */
+	public void add(int value) {
+		ensureCapacity(this.size);
+
+		this.elements[this.size++] = value;
+	}
+
+	/**
+	 * Removes and returns the last element of this collection.
+	 *
+	 * @return the last element.
+	 * @throws ArrayIndexOutOfBoundsException if the collection is empty.
+	 */
+	public int pop() {
+		return this.elements[--this.size];
+	}
+
+	/**
+	 * Returns {@code true} if this collection contains no element.
+	 *
+	 * @return {@code true} if this collection contains no element.
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Clears the collection.
+	 */
+	public void clear() {
+		Arrays.fill(this.elements, 0, this.size, 0);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the size of this collection.
+	 *
+	 * @return the size of this collection.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the current capacity of this collection.
+	 *
+	 * @return the current capacity of this collection.
+	 */
+	public int capacity() {
+		return this.elements.length;
+	}
+
+	private void ensureCapacity(int index) {
+		if (index >= this.elements.length) {
+			int newCapacity = Math.max(this.elements.length << 1, index + 1);
+			this.elements = Arrays.copyOf(this.elements, newCapacity);
+		}
+	}
+
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.defaultWriteObject();
+
+		for (int i = 0; i < this.size; i++) {
+			stream.writeInt(this.elements[i]);
+		}
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+
+		this.elements = new int[Math.max(16, this.size)];
+
+		for (int i = 0; i < this.size; i++) {
+			this.elements[i] = stream.readInt();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of non-negative primitive {@code long}, written by a single producer and read by any number of consumers.
+ * <p>
+ * The producer publishes with {@link #offer(long)} and may {@link #grow()} the buffer when it is full,
+ * consumers claim values with {@link #poll()}.
+ *
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+public class LongRingBuffer {
+	/**
+	 * Value returned by {@link #poll()} when the buffer is empty.
+	 */
+	public static final long EMPTY = -1L;
+
+	/**
+	 * Only replaced by the producer, the values not consumed yet are copied before the swap
+	 * and the previous array is never written again.
+	 */
+	private volatile long[] elements;
+
+	/**
+	 * Sequence of the next value to publish, only written by the producer.
+	 */
+	private volatile long head;
+
+	/**
+	 * Sequence of the next value to consume.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Creates a ring buffer.
+	 *
+	 * @param capacity initial capacity, rounded up to a power of two.
+	 * @throws IllegalArgumentException if the capacity isn't positive.
+	 */
+	public LongRingBuffer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.elements = new long[size];
+	}
+
+	/**
+	 * Publishes the given value. Must only be called by the producer.
+	 *
+	 * @param value a non-negative value.
+	 * @return {@code false} if the buffer is full, {@code true} otherwise.
+	 */
+	public boolean offer(long value) {
+		assert (value >= 0);
+
+		long[] elements = this.elements;
+		long head = this.head;
+
+		if (head - this.tail.get() >= elements.length) {
+			return false;
+		}
+
+		elements[(int) head & (elements.length - 1)] = value;
+		this.head = head + 1;
+
+		return true;
+	}
+
+	/**
+	 * Doubles the capacity of the buffer. Must only be called by the producer.
+	 */
+	public void grow() {
+		long[] elements = this.elements;
+		long[] grown = new long[elements.length << 1];
+
+		long head = this.head;
+		for (long i = this.tail.get(); i < head; i++) {
+			grown[(int) i & (grown.length - 1)] = elements[(int) i & (elements.length - 1)];
+		}
+
+		this.elements = grown;
+	}
+
+	/**
+	 * Claims the next value. Can be called by any number of consumers.
+	 *
+	 * @return the next value, {@link #EMPTY} if the buffer is empty.
+	 */
+	public long poll() {
+		while (true) {
+			long tail = this.tail.get();
+			if (tail >= this.head) {
+				return EMPTY;
+			}
+
+			long[] elements = this.elements;
+			long value = elements[(int) tail & (elements.length - 1)];
+
+			// The slot can't be overwritten before the tail moves past it, so the value is valid if the claim succeeds.
+			if (this.tail.compareAndSet(tail, tail + 1)) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of values published but not consumed yet.
+	 *
+	 * @return the number of values waiting.
+	 */
+	public int size() {
+		return (int) (this.head - this.tail.get());
+	}
+
+	/**
+	 * Returns the current capacity of the buffer.
+	 *
+	 * @return the current capacity of the buffer.
+	 */
+	public int capacity() {
+		return this.elements.length;
+	}
+}
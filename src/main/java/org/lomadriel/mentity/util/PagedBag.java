@@ -0,0 +1,199 @@
+/*
+ * mentity
+ *
+ * Copyright (c) 2016 Jérôme BOULMIER
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * This program is free software; you can redistribute it and/or modify
+ */
+
+package org.lomadriel.mentity.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Auto-resizable array split into fixed-size pages.
+ * <p>
+ * Unlike {@link Bag}, elements are never copied when the collection grows: a page is allocated the first time one of
+ * its elements is set, and released as soon as all its elements are null again.
+ * Memory follows the distribution of the elements rather than the highest index.
+ *
+ * @param <E> type of the elements in this list.
+ * @author Jérôme BOULMIER
+ * @since 1.4
+ */
+public class PagedBag<E> implements Serializable {
+	private static final long serialVersionUID = 8290165425340372563L;
+	private static final int DEFAULT_PAGE_SHIFT = 10;
+
+	private final int pageShift;
+	private final int pageMask;
+
+	/**
+	 * Pages of this collection.
+	 * {@link #writeObject(ObjectOutputStream)} and {@link #readObject(ObjectInputStream)}
+	 */
+	private transient Object[][] pages;
+	private transient int[] pageSizes;
+	private int highestElement;
+
+	public PagedBag() {
+		this(DEFAULT_PAGE_SHIFT);
+	}
+
+	/**
+	 * Constructs a new bag with pages of {@code 2^pageShift} elements.
+	 *
+	 * @param pageShift log2 of the size of a page.
+	 * @throws IllegalArgumentException if pageShift isn't between 0 and 30.
+	 */
+	public PagedBag(int pageShift) {
+		if (pageShift < 0 || pageShift > 30) {
+			throw new IllegalArgumentException("pageShift must be between 0 and 30");
+		}
+
+		this.pageShift = pageShift;
+		this.pageMask = (1 << pageShift) - 1;
+		this.pages = new Object[16][];
+		this.pageSizes = new int[16];
+	}
+
+	/**
+	 * Returns the element at the specified position.
+	 *
+	 * @param index index of the element to return.
+	 * @return the element at the specified position.
+	 * @throws ArrayIndexOutOfBoundsException if index is negative.
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		int pageIndex = index >>> this.pageShift;
+		if (pageIndex >= this.pages.length) {
+			return null;
+		}
+
+		Object[] page = this.pages[pageIndex];
+		return page == null ? null : (E) page[index & this.pageMask];
+	}
+
+	/**
+	 * Sets the element at the specified position.
+	 * Setting the last non null element of a page to null releases the page.
+	 *
+	 * @param index index of the element to set.
+	 * @param value value of the element.
+	 * @throws ArrayIndexOutOfBoundsException if index is negative.
+	 */
+	public void set(int index, E value) {
+		int pageIndex = index >>> this.pageShift;
+		int offset = index & this.pageMask;
+
+		if (value == null) {
+			if (pageIndex < this.pages.length && this.pages[pageIndex] != null
+					&& this.pages[pageIndex][offset] != null) {
+				this.pages[pageIndex][offset] = null;
+
+				if (--this.pageSizes[pageIndex] == 0) {
+					this.pages[pageIndex] = null;
+				}
+			}
+
+			return;
+		}
+
+		if (pageIndex >= this.pages.length) {
+			int newLength = Math.max(this.pages.length << 1, pageIndex + 1);
+			this.pages = Arrays.copyOf(this.pages, newLength);
+			this.pageSizes = Arrays.copyOf(this.pageSizes, newLength);
+		}
+
+		Object[] page = this.pages[pageIndex];
+		if (page == null) {
+			page = new Object[1 << this.pageShift];
+			this.pages[pageIndex] = page;
+		}
+
+		if (page[offset] == null) {
+			++this.pageSizes[pageIndex];
+		}
+
+		page[offset] = value;
+
+		if (index > this.highestElement) {
+			this.highestElement = index;
+		}
+	}
+
+	/**
+	 * Clears the collection and releases all the pages.
+	 */
+	public void clear() {
+		this.pages = new Object[16][];
+		this.pageSizes = new int[16];
+		this.highestElement = 0;
+	}
+
+	/**
+	 * Returns the size of this collection.
+	 *
+	 * @return the size of this collection.
+	 */
+	public int size() {
+		return this.highestElement + 1;
+	}
+
+	/**
+	 * Returns the current capacity of this collection, the number of elements of the allocated pages.
+	 *
+	 * @return the current capacity of this collection.
+	 */
+	public int capacity() {
+		int pageCount = 0;
+		for (Object[] page : this.pages) {
+			if (page != null) {
+				++pageCount;
+			}
+		}
+
+		return pageCount << this.pageShift;
+	}
+
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		stream.defaultWriteObject();
+
+		for (int i = 0; i <= this.highestElement; i++) {
+			stream.writeObject(get(i));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+		stream.defaultReadObject();
+
+		int highestElement = this.highestElement;
+		this.pages = new Object[16][];
+		this.pageSizes = new int[16];
+
+		for (int i = 0; i <= highestElement; i++) {
+			set(i, (E) stream.readObject());
+		}
+
+		this.highestElement = highestElement;
+	}
+}
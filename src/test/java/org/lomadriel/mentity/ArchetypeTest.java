@@ -0,0 +1,99 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+
+public class ArchetypeTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	private static class MovementSystem extends FilteredSystem {
+		MovementSystem() {
+			super(new Filter(new HashSet<>(Arrays.asList(Position.class, Velocity.class))));
+		}
+
+		@Override
+		protected void update(int entity) {
+		}
+	}
+
+	@Test
+	public void chunks() {
+		Archetype archetype = new Archetype(new BitSet());
+
+		for (int i = 0; i < Archetype.CHUNK_SIZE + 10; i++) {
+			Assert.assertEquals(i, archetype.add(i * 2));
+		}
+
+		Assert.assertEquals(2, archetype.getChunkCount());
+		Assert.assertEquals(Archetype.CHUNK_SIZE, archetype.getChunkSize(0));
+		Assert.assertEquals(10, archetype.getChunkSize(1));
+
+		// The last entity takes the place of the removed one.
+		Assert.assertEquals((Archetype.CHUNK_SIZE + 9) * 2, archetype.remove(3));
+		Assert.assertEquals((Archetype.CHUNK_SIZE + 9) * 2, archetype.getChunk(0)[3]);
+		Assert.assertEquals(-1, archetype.remove(archetype.size() - 1));
+		Assert.assertEquals(Archetype.CHUNK_SIZE + 8, archetype.size());
+	}
+
+	@Test
+	public void backendStatistics() {
+		World world = new WorldBuilder().addSystem(new MovementSystem())
+				.setBackend(WorldBuilder.Backend.ARCHETYPE).toWorld();
+
+		int entity = world.createEntity();
+		world.getMapper(Position.class).addComponent(entity, new Position());
+		world.update();
+		Assert.assertEquals(0, world.getFilterUpdateCount());
+		Assert.assertEquals(1, world.getSkippedFilterUpdateCount());
+
+		world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		world.update();
+		Assert.assertEquals(1, world.getFilterUpdateCount());
+
+		String plan = world.dumpFilterPlan();
+		Assert.assertTrue(plan, plan.contains("Position & Velocity [size=1] <- filter 0"));
+		// The archetype left by the entity is dropped.
+		Assert.assertFalse(plan, plan.contains("Position [size"));
+	}
+
+	@Test
+	public void emptyArchetypesAreDropped() {
+		Filter filter = new MovementSystem().getFilter();
+		World world = new WorldBuilder().addSystem(new MovementSystem())
+				.setBackend(WorldBuilder.Backend.ARCHETYPE).toWorld();
+
+		int[] entities = world.createEntities(2);
+		for (int entity : entities) {
+			world.getMapper(Position.class).addComponent(entity, new Position());
+			world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		}
+		world.update();
+		Assert.assertEquals(1, world.getArchetypes(filter).size());
+
+		for (int step = 0; step < 10; step++) {
+			// One entity leaves the archetype and comes back, the other one keeps it alive.
+			world.getMapper(Velocity.class).removeComponent(entities[0]);
+			world.update();
+			world.getMapper(Velocity.class).addComponent(entities[0], new Velocity());
+			world.update();
+		}
+
+		Assert.assertEquals(1, world.dumpFilterPlan().split(System.lineSeparator()).length);
+
+		world.destroyEntities(entities);
+		world.update();
+		Assert.assertTrue(world.getArchetypes(filter).isEmpty());
+		Assert.assertTrue(world.dumpFilterPlan().isEmpty());
+		Assert.assertTrue(world.query(filter).isEmpty());
+	}
+}
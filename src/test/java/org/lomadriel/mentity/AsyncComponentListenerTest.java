@@ -0,0 +1,113 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncComponentListenerTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	@Test
+	public void delivery() throws InterruptedException {
+		World world = new WorldBuilder().toWorld();
+		BitSet removed = new BitSet();
+		AtomicInteger wrongType = new AtomicInteger();
+
+		try (AsyncComponentListener listener = new AsyncComponentListener((entity, type) -> {
+			if (type != ComponentType.of(Position.class)) {
+				wrongType.incrementAndGet();
+			}
+
+			synchronized (removed) {
+				removed.set(entity);
+			}
+		}, 16, AsyncComponentListener.Backpressure.GROW, 2)) {
+			world.addComponentRemovedListener(ComponentType.of(Position.class), listener);
+
+			int[] entities = world.createEntities(100);
+			for (int entity : entities) {
+				world.getMapper(Position.class).addComponent(entity, new Position());
+			}
+
+			world.destroyEntities(entities);
+			world.update();
+
+			listener.awaitDelivery();
+		}
+
+		Assert.assertEquals(100, removed.cardinality());
+		Assert.assertEquals(0, wrongType.get());
+	}
+
+	@Test
+	public void drop() throws InterruptedException {
+		CountDownLatch blocked = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+
+		AsyncComponentListener listener = new AsyncComponentListener((entity, type) -> {
+			calls.incrementAndGet();
+
+			try {
+				blocked.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, 4, AsyncComponentListener.Backpressure.DROP, 1);
+
+		ComponentType type = ComponentType.of(Position.class);
+		for (int i = 0; i < 100; i++) {
+			listener.onComponent(i, type);
+		}
+
+		// At most one event being delivered and four waiting.
+		Assert.assertTrue(listener.getDropped() >= 95);
+
+		blocked.countDown();
+		listener.awaitDelivery();
+		listener.close();
+
+		Assert.assertEquals(100 - listener.getDropped(), calls.get());
+	}
+
+	@Test
+	public void idleConsumersWait() throws InterruptedException {
+		Thread[] consumer = new Thread[1];
+		AtomicInteger calls = new AtomicInteger();
+
+		AsyncComponentListener listener = new AsyncComponentListener((entity, type) -> {
+			consumer[0] = Thread.currentThread();
+			calls.incrementAndGet();
+		}, 4);
+
+		ComponentType type = ComponentType.of(Position.class);
+		listener.onComponent(0, type);
+		listener.awaitDelivery();
+
+		// Parked without timeout until the next event.
+		for (int i = 0; i < 5000 && consumer[0].getState() != Thread.State.WAITING; i++) {
+			Thread.sleep(1);
+		}
+		Assert.assertEquals(Thread.State.WAITING, consumer[0].getState());
+
+		listener.onComponent(1, type);
+		listener.awaitDelivery();
+		Assert.assertEquals(2, calls.get());
+
+		listener.close();
+		Assert.assertFalse(consumer[0].isAlive());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void closed() {
+		AsyncComponentListener listener = new AsyncComponentListener((entity, type) -> {
+		}, 4);
+		listener.close();
+
+		listener.onComponent(0, ComponentType.of(Position.class));
+	}
+}
@@ -0,0 +1,51 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChangeTrackerTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	@Test
+	public void worldsAreIsolated() {
+		World first = new WorldBuilder().toWorld();
+		World second = new WorldBuilder().toWorld();
+
+		for (int i = 0; i < 10; i++) {
+			second.createEntity();
+		}
+
+		// The first world doesn't know entity 9, it must not be notified.
+		second.getMapper(Position.class).addComponent(9, new Position());
+		second.update();
+
+		Assert.assertTrue(second.hasComponent(9, Position.class));
+		Assert.assertFalse(first.hasComponent(9, Position.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownEntity() {
+		World world = new WorldBuilder().toWorld();
+
+		world.getMapper(Position.class).addComponent(3, new Position());
+	}
+
+	@Test
+	public void modifiedEntities() {
+		EntityManager entityManager = new EntityManager();
+		int entity = entityManager.createEntity();
+
+		ChangeTracker tracker = new ChangeTracker(entityManager);
+		tracker.clear();
+		Assert.assertFalse(tracker.isDirty());
+
+		tracker.modified(entity);
+		Assert.assertTrue(tracker.isDirty());
+		Assert.assertTrue(tracker.getModifiedEntities().get(entity));
+
+		tracker.clear();
+		Assert.assertTrue(tracker.getModifiedEntities().isEmpty());
+	}
+}
@@ -0,0 +1,55 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ComponentPoolTest {
+	public static class Bullet extends Component {
+		int damage;
+
+		@Override
+		protected void reset() {
+			this.damage = 0;
+		}
+	}
+
+	private ComponentPool<Bullet> pool;
+	private ComponentMapper<Bullet> mapper;
+
+	@Before
+	public void init() {
+		this.pool = new ComponentPool<>(Bullet::new);
+		this.mapper = new ComponentMapper<>(Bullet.class);
+		this.mapper.setPool(this.pool);
+	}
+
+	@Test
+	public void recycle() {
+		Bullet bullet = this.mapper.create(0);
+		bullet.damage = 10;
+		Assert.assertEquals(1, this.pool.getMisses());
+
+		this.mapper.removeComponent(0);
+		Assert.assertEquals(0, this.pool.size());
+
+		this.mapper.flush();
+		Assert.assertEquals(1, this.pool.size());
+
+		Bullet recycled = this.mapper.create(1);
+		Assert.assertSame(bullet, recycled);
+		Assert.assertEquals(0, recycled.damage);
+		Assert.assertEquals(1, recycled.getEntity());
+		Assert.assertEquals(1, this.pool.getHits());
+		Assert.assertEquals(1, this.pool.getMisses());
+	}
+
+	@Test
+	public void maxSize() {
+		ComponentPool<Bullet> boundedPool = new ComponentPool<>(Bullet::new, 1);
+		boundedPool.free(new Bullet());
+		boundedPool.free(new Bullet());
+
+		Assert.assertEquals(1, boundedPool.size());
+	}
+}
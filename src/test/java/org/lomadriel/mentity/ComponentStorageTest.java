@@ -0,0 +1,107 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.function.Supplier;
+
+public class ComponentStorageTest {
+	public static class Body extends Component {
+		float x;
+	}
+
+	public static class PackedBody extends Body {
+	}
+
+	public static class OffHeapBody extends Body {
+	}
+
+	public static class SparseBody extends Body {
+	}
+
+	public static class SharedBody extends Body {
+	}
+
+	public static class Dead extends Tag {
+	}
+
+	@Test
+	public void reset() {
+		World world = new WorldBuilder()
+				.setStorage(PackedBody.class, ComponentStorage.PACKED)
+				.setStorage(OffHeapBody.class, ComponentStorage.OFF_HEAP)
+				.setStorage(SparseBody.class, ComponentStorage.SPARSE)
+				.setStorage(SharedBody.class, ComponentStorage.SHARED)
+				.setStorage(Dead.class, ComponentStorage.TAG)
+				.toWorld();
+
+		fill(world, Body.class, Body::new);
+		fill(world, PackedBody.class, PackedBody::new);
+		fill(world, OffHeapBody.class, OffHeapBody::new);
+		fill(world, SparseBody.class, SparseBody::new);
+		fill(world, SharedBody.class, SharedBody::new);
+		world.getMapper(Dead.class).create(world.createEntity());
+		world.update();
+
+		world.reset();
+
+		check(world, Body.class, Body::new);
+		check(world, PackedBody.class, PackedBody::new);
+		check(world, OffHeapBody.class, OffHeapBody::new);
+		check(world, SparseBody.class, SparseBody::new);
+		check(world, SharedBody.class, SharedBody::new);
+
+		int entity = world.createEntity();
+		Assert.assertFalse(world.getMapper(Dead.class).hasComponent(entity));
+
+		world.getMapper(Dead.class).create(entity);
+		world.update();
+		Assert.assertTrue(world.getMapper(Dead.class).hasComponent(entity));
+	}
+
+	@Test
+	public void serialization() throws Exception {
+		ComponentMapper<Body> mapper = new ComponentMapper<>(Body.class);
+		Body body = new Body();
+		body.x = 7;
+		mapper.addComponent(5000, body);
+		mapper.flush();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(mapper);
+		}
+
+		ComponentMapper<Body> loadedMapper;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			loadedMapper = (ComponentMapper<Body>) ois.readObject();
+		}
+
+		Assert.assertTrue(loadedMapper.hasComponent(5000));
+		Assert.assertFalse(loadedMapper.hasComponent(4999));
+		Assert.assertEquals(7f, loadedMapper.getComponent(5000).x, 0f);
+	}
+
+	private static <T extends Body> void fill(World world, Class<T> type, Supplier<T> factory) {
+		for (int i = 0; i < 100; i++) {
+			T body = factory.get();
+			body.x = i;
+			world.getMapper(type).addComponent(world.createEntity(), body);
+		}
+	}
+
+	private static <T extends Body> void check(World world, Class<T> type, Supplier<T> factory) {
+		int entity = world.createEntity();
+		Assert.assertFalse(world.getMapper(type).hasComponent(entity));
+
+		T body = factory.get();
+		body.x = 3;
+		world.getMapper(type).addComponent(entity, body);
+		world.update();
+		Assert.assertEquals(3f, world.getMapper(type).getComponent(entity).x, 0f);
+	}
+}
@@ -0,0 +1,78 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class ComponentTypeTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	@Test
+	public void sameClassSameType() {
+		ComponentType position = ComponentType.of(Position.class);
+
+		Assert.assertSame(position, ComponentType.of(Position.class));
+		Assert.assertEquals(Position.class, position.getComponentClass());
+		Assert.assertNotEquals(position.getId(), ComponentType.of(Velocity.class).getId());
+	}
+
+	@Test
+	public void denseIds() {
+		ComponentType position = ComponentType.of(Position.class);
+		ComponentType velocity = ComponentType.of(Velocity.class);
+
+		Assert.assertTrue(position.getId() < ComponentType.count());
+		Assert.assertTrue(velocity.getId() < ComponentType.count());
+	}
+
+	@Test
+	public void lookupDoesNotCreateMapper() {
+		ComponentManager componentManager = new ComponentManager();
+		ComponentType velocity = ComponentType.of(Velocity.class);
+
+		Assert.assertFalse(componentManager.hasComponent(0, velocity));
+		Assert.assertNull(componentManager.getMapper(velocity));
+		Assert.assertTrue(componentManager.getMappers().isEmpty());
+
+		ComponentMapper<Velocity> mapper = componentManager.getMapper(Velocity.class);
+		Assert.assertSame(mapper, componentManager.getMapper(velocity));
+		Assert.assertSame(velocity, mapper.getType());
+	}
+
+	@Test
+	public void saveAndLoad() throws Exception {
+		World world = new WorldBuilder().toWorld();
+		int entity = world.createEntity();
+		Position position = new Position();
+		position.x = 3;
+		world.getMapper(Position.class).addComponent(entity, position);
+		world.getMapper(Velocity.class).addComponent(world.createEntity(), new Velocity());
+		world.update();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(world.save());
+		}
+
+		WorldSave save;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			save = (WorldSave) ois.readObject();
+		}
+
+		World loadedWorld = new WorldBuilder().toWorld(save);
+		Assert.assertTrue(loadedWorld.hasComponent(entity, ComponentType.of(Position.class)));
+		Assert.assertFalse(loadedWorld.hasComponent(entity, ComponentType.of(Velocity.class)));
+		Assert.assertEquals(3f, loadedWorld.getMapper(Position.class).getComponent(entity).x, 0f);
+		Assert.assertTrue(loadedWorld.getSignature(entity).get(ComponentType.of(Position.class).getId()));
+	}
+}
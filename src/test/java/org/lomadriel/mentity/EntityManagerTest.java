@@ -5,6 +5,13 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.BitSet;
+
 public class EntityManagerTest {
 	private final EntityManager entityManager = new EntityManager();
 
@@ -48,4 +55,168 @@ public class EntityManagerTest {
 		Assert.assertEquals(30, this.entityManager.createEntity());
 		Assert.assertEquals(32, this.entityManager.createEntity());
 	}
+
+	@Test
+	public void freeListTest() {
+		this.entityManager.destroyEntity(40);
+		this.entityManager.flush();
+
+		this.entityManager.destroyEntity(20);
+		this.entityManager.destroyEntity(10);
+		this.entityManager.flush();
+
+		Assert.assertEquals(10, this.entityManager.createEntity());
+		Assert.assertEquals(20, this.entityManager.createEntity());
+		Assert.assertEquals(40, this.entityManager.createEntity());
+		Assert.assertEquals(64, this.entityManager.createEntity());
+	}
+
+	@Test
+	public void resetTest() {
+		this.entityManager.destroyEntity(5);
+		this.entityManager.flush();
+		this.entityManager.reset();
+
+		Assert.assertEquals(0, this.entityManager.createEntity());
+		Assert.assertEquals(1, this.entityManager.createEntity());
+	}
+
+	@Test
+	public void generationTest() {
+		long handle = EntityHandle.of(3, this.entityManager.getGeneration(3));
+		Assert.assertTrue(this.entityManager.isAlive(handle));
+
+		this.entityManager.destroyEntity(3);
+		Assert.assertFalse(this.entityManager.isAlive(handle));
+
+		this.entityManager.flush();
+		Assert.assertEquals(3, this.entityManager.createEntity());
+		Assert.assertFalse(this.entityManager.isAlive(handle));
+		Assert.assertTrue(this.entityManager.isAlive(EntityHandle.of(3, this.entityManager.getGeneration(3))));
+
+		long otherHandle = EntityHandle.of(4, this.entityManager.getGeneration(4));
+		this.entityManager.reset();
+		Assert.assertFalse(this.entityManager.isAlive(otherHandle));
+	}
+
+	@Test
+	public void bulkTest() {
+		this.entityManager.destroyEntity(7);
+		this.entityManager.flush();
+
+		int[] entities = this.entityManager.createEntities(4);
+		Assert.assertArrayEquals(new int[]{7, 64, 65, 66}, entities);
+		Assert.assertEquals(67, this.entityManager.getEntities().cardinality());
+
+		BitSet destroyed = new BitSet();
+		destroyed.set(64, 67);
+		Assert.assertTrue(this.entityManager.entitiesExist(destroyed));
+
+		this.entityManager.destroyEntities(destroyed);
+		this.entityManager.flush();
+
+		Assert.assertFalse(this.entityManager.entitiesExist(destroyed));
+		Assert.assertEquals(64, this.entityManager.createEntity());
+	}
+
+	@Test
+	public void destroyedEntityHandle() {
+		World world = new WorldBuilder().toWorld();
+		int entity = world.createEntity();
+		long handle = world.getHandle(entity);
+
+		world.destroyEntity(entity);
+		try {
+			world.getHandle(entity);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// The entity is dead even if its removal isn't flushed yet.
+		}
+
+		world.update();
+		Assert.assertEquals(entity, world.createEntity());
+		Assert.assertFalse(world.isAlive(handle));
+		Assert.assertTrue(world.isAlive(world.getHandle(entity)));
+	}
+
+	@Test
+	public void destroyTwice() {
+		World world = new WorldBuilder().toWorld();
+		int[] removals = new int[1];
+		world.setEntityRemovedListener(entity -> removals[0]++);
+
+		int[] entities = world.createEntities(3);
+		long handle = world.getHandle(entities[0]);
+
+		world.destroyEntity(entities[0]);
+		world.destroyEntity(entities[0]);
+		world.destroyEntities(entities);
+		Assert.assertEquals(3, removals[0]);
+
+		world.update();
+		Assert.assertEquals(entities[0], world.createEntity());
+		Assert.assertFalse(world.isAlive(handle));
+		Assert.assertEquals(EntityHandle.generation(handle) + 1, EntityHandle.generation(world.getHandle(entities[0])));
+	}
+
+	@Test
+	public void invalidIds() {
+		World world = new WorldBuilder().toWorld();
+		int entity = world.createEntity();
+		long handle = world.getHandle(entity);
+
+		for (int[] entities : new int[][]{{entity, -1}, {entity, 1000}}) {
+			try {
+				world.destroyEntities(entities);
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				// Nothing is destroyed.
+				Assert.assertTrue(world.isAlive(handle));
+			}
+		}
+
+		try {
+			world.destroyEntity(-1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(world.isAlive(handle));
+		}
+	}
+
+	@Test
+	public void serialization() throws Exception {
+		this.entityManager.destroyEntity(3);
+		this.entityManager.flush();
+		long handle = EntityHandle.of(4, this.entityManager.getGeneration(4));
+
+		EntityManager loaded = copy(this.entityManager);
+		Assert.assertEquals(this.entityManager.getEntities(), loaded.getEntities());
+		Assert.assertEquals(1, loaded.getGeneration(3));
+		Assert.assertTrue(loaded.isAlive(handle));
+		Assert.assertEquals(3, loaded.createEntity());
+
+		// Saves made before the generations existed.
+		EntityManager oldManager = new EntityManager();
+		oldManager.createEntities(8);
+		Field generations = EntityManager.class.getDeclaredField("generations");
+		generations.setAccessible(true);
+		generations.set(oldManager, null);
+
+		loaded = copy(oldManager);
+		Assert.assertEquals(8, loaded.getEntities().cardinality());
+		Assert.assertEquals(0, loaded.getGeneration(4));
+		loaded.destroyEntity(4);
+		Assert.assertEquals(1, loaded.getGeneration(4));
+	}
+
+	private static EntityManager copy(EntityManager entityManager) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(entityManager);
+		}
+
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return (EntityManager) ois.readObject();
+		}
+	}
 }
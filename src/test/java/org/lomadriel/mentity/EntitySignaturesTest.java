@@ -0,0 +1,77 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+public class EntitySignaturesTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	private ComponentManager componentManager;
+	private int position;
+	private int velocity;
+
+	@Before
+	public void init() {
+		this.componentManager = new ComponentManager();
+		this.position = ComponentType.of(Position.class).getId();
+		this.velocity = ComponentType.of(Velocity.class).getId();
+	}
+
+	@Test
+	public void addAndRemove() {
+		this.componentManager.getMapper(Position.class).addComponent(0, new Position());
+		this.componentManager.getMapper(Velocity.class).addComponent(0, new Velocity());
+		this.componentManager.getMapper(Velocity.class).addComponent(1, new Velocity());
+
+		BitSet signature = this.componentManager.getSignature(0);
+		Assert.assertEquals(2, signature.cardinality());
+		Assert.assertTrue(signature.get(this.position));
+		Assert.assertTrue(signature.get(this.velocity));
+
+		this.componentManager.getMapper(Position.class).removeComponent(0);
+		Assert.assertTrue(this.componentManager.getSignature(0).get(this.position));
+
+		this.componentManager.flush();
+		Assert.assertFalse(this.componentManager.getSignature(0).get(this.position));
+		Assert.assertTrue(this.componentManager.getSignature(0).get(this.velocity));
+	}
+
+	@Test
+	public void removeComponents() {
+		this.componentManager.getMapper(Position.class).addComponent(0, new Position());
+		this.componentManager.getMapper(Velocity.class).addComponent(0, new Velocity());
+		this.componentManager.getMapper(Velocity.class).addComponent(1, new Velocity());
+
+		this.componentManager.removeComponents(0);
+		this.componentManager.flush();
+
+		Assert.assertTrue(this.componentManager.getSignature(0).isEmpty());
+		Assert.assertFalse(this.componentManager.hasComponent(0, Position.class));
+		Assert.assertTrue(this.componentManager.hasComponent(1, Velocity.class));
+
+		BitSet entities = new BitSet();
+		entities.set(1, 3);
+
+		this.componentManager.removeComponents(entities);
+		this.componentManager.flush();
+
+		Assert.assertTrue(this.componentManager.getSignature(1).isEmpty());
+		Assert.assertFalse(this.componentManager.hasComponent(1, Velocity.class));
+	}
+
+	@Test
+	public void unknownEntity() {
+		Assert.assertTrue(this.componentManager.getSignature(1000).isEmpty());
+
+		this.componentManager.removeComponents(1000);
+	}
+}
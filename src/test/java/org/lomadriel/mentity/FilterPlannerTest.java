@@ -0,0 +1,100 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class FilterPlannerTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	public static class Collider extends Component {
+		float radius;
+	}
+
+	public static class Frozen extends Component {
+		boolean value;
+	}
+
+	private ComponentManager componentManager;
+	private FilterPlanner planner;
+	private Filter[] filters;
+
+	@Before
+	public void init() {
+		this.componentManager = new ComponentManager();
+		this.planner = new FilterPlanner(this.componentManager);
+
+		this.filters = new Filter[]{
+				new Filter(new HashSet<>(Arrays.asList(Position.class, Velocity.class))),
+				new Filter(new HashSet<>(Arrays.asList(Velocity.class, Position.class, Collider.class))),
+				new Filter(new HashSet<>(Arrays.asList(Position.class, Velocity.class)),
+						new HashSet<>(Collections.singletonList(Frozen.class)))
+		};
+
+		for (Filter filter : this.filters) {
+			this.planner.add(filter);
+		}
+
+		for (int entity = 0; entity < 64; entity++) {
+			if (entity % 2 == 0) {
+				this.componentManager.getMapper(Position.class).addComponent(entity, new Position());
+			}
+
+			if (entity % 3 == 0) {
+				this.componentManager.getMapper(Velocity.class).addComponent(entity, new Velocity());
+			}
+
+			if (entity % 5 == 0) {
+				this.componentManager.getMapper(Collider.class).addComponent(entity, new Collider());
+			}
+
+			if (entity % 7 == 0) {
+				this.componentManager.getMapper(Frozen.class).addComponent(entity, new Frozen());
+			}
+		}
+	}
+
+	@Test
+	public void sameResultsAsPlans() {
+		BitSet entities = new BitSet();
+		entities.set(0, 64);
+
+		this.planner.begin(entities);
+
+		for (int i = 0; i < this.filters.length; i++) {
+			Assert.assertEquals(this.filters[i].getPlan().evaluate(entities, this.componentManager),
+					this.planner.evaluate(i));
+		}
+	}
+
+	@Test
+	public void sharedPrefix() {
+		BitSet entities = new BitSet();
+		entities.set(0, 64);
+
+		this.planner.begin(entities);
+		for (int i = 0; i < this.filters.length; i++) {
+			this.planner.evaluate(i);
+		}
+
+		String[] lines = this.planner.dump().split(System.lineSeparator());
+
+		// entities, then the shared {Position, Velocity} chain, then Collider.
+		Assert.assertEquals(4, lines.length);
+		Assert.assertTrue(lines[0].startsWith("entities [filters=3"));
+		Assert.assertTrue(lines[2].contains("[filters=3, evaluations=1"));
+		Assert.assertTrue(lines[2].endsWith("<- filter 0 <- filter 2"));
+		Assert.assertTrue(lines[3].trim().startsWith("Collider [filters=1, evaluations=1"));
+	}
+}
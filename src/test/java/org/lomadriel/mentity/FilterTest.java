@@ -0,0 +1,103 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class FilterTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Sprite extends Component {
+		String name;
+	}
+
+	public static class Mesh extends Component {
+		String name;
+	}
+
+	public static class Hidden extends Component {
+		boolean value;
+	}
+
+	private Filter filter;
+	private ComponentManager componentManager;
+	private BitSet entities;
+
+	@Before
+	public void init() {
+		this.filter = new Filter(new HashSet<>(Collections.singletonList(Position.class)),
+				new HashSet<>(Collections.singletonList(Hidden.class)),
+				Collections.singletonList(new HashSet<>(Arrays.asList(Sprite.class, Mesh.class))));
+
+		this.componentManager = new ComponentManager();
+		this.entities = new BitSet();
+		this.entities.set(0, 6);
+
+		// 0: position only, 1: position + sprite, 2: position + mesh, 3: position + mesh + hidden, 4: sprite only.
+		for (int entity = 0; entity < 4; entity++) {
+			this.componentManager.getMapper(Position.class).addComponent(entity, new Position());
+		}
+
+		this.componentManager.getMapper(Sprite.class).addComponent(1, new Sprite());
+		this.componentManager.getMapper(Mesh.class).addComponent(2, new Mesh());
+		this.componentManager.getMapper(Mesh.class).addComponent(3, new Mesh());
+		this.componentManager.getMapper(Hidden.class).addComponent(3, new Hidden());
+		this.componentManager.getMapper(Sprite.class).addComponent(4, new Sprite());
+	}
+
+	@Test
+	public void evaluate() {
+		BitSet expected = new BitSet();
+		expected.set(1, 3);
+
+		Assert.assertEquals(expected, this.filter.getPlan().evaluate(this.entities, this.componentManager));
+	}
+
+	@Test
+	public void matches() {
+		for (int entity = 0; entity < 6; entity++) {
+			Assert.assertEquals(entity == 1 || entity == 2,
+					this.filter.getPlan().matches(this.componentManager.getSignature(entity)));
+		}
+	}
+
+	@Test
+	public void missingMapper() {
+		Filter filter = new Filter(new HashSet<>(Arrays.asList(Position.class, Hidden.class)),
+				Collections.emptySet(),
+				Collections.singletonList(Collections.singleton(Mesh.class)));
+
+		Assert.assertTrue(new Filter(Hidden.class).getPlan().evaluate(new BitSet(), new ComponentManager()).isEmpty());
+		Assert.assertEquals(1, filter.getPlan().evaluate(this.entities, this.componentManager).cardinality());
+	}
+
+	@Test
+	public void equality() {
+		Filter same = new Filter(new HashSet<>(Collections.singletonList(Position.class)),
+				new HashSet<>(Collections.singletonList(Hidden.class)),
+				Collections.singletonList(new HashSet<>(Arrays.asList(Mesh.class, Sprite.class))));
+
+		Assert.assertEquals(this.filter, same);
+		Assert.assertEquals(this.filter.hashCode(), same.hashCode());
+		Assert.assertNotEquals(this.filter, new Filter(Position.class, Hidden.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyGroup() {
+		new Filter(Collections.emptySet(), Collections.emptySet(), Collections.singletonList(Collections.emptySet()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void excludedInGroup() {
+		new Filter(new HashSet<>(Collections.singletonList(Position.class)),
+				new HashSet<>(Collections.singletonList(Hidden.class)),
+				Collections.singletonList(new HashSet<>(Arrays.asList(Sprite.class, Hidden.class))));
+	}
+}
@@ -0,0 +1,161 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+public class FilteredSystemManagerTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	public static class Frozen extends Component {
+		boolean value;
+	}
+
+	public static class Name extends Component {
+		String value;
+	}
+
+	private static class MovementSystem extends FilteredSystem {
+		MovementSystem() {
+			super(new Filter(new HashSet<>(Arrays.asList(Position.class, Velocity.class)),
+					new HashSet<>(Collections.singletonList(Frozen.class))));
+		}
+
+		@Override
+		protected void update(int entity) {
+		}
+
+		BitSet getEntities() {
+			BitSet entities = new BitSet();
+			this.entities.forEach(entities::set);
+
+			return entities;
+		}
+	}
+
+	private MovementSystem system;
+	private World world;
+
+	@Before
+	public void init() {
+		this.system = new MovementSystem();
+		this.world = new WorldBuilder().addSystem(this.system).toWorld();
+	}
+
+	@Test
+	public void incrementalUpdates() {
+		int entity = this.world.createEntity();
+		this.world.getMapper(Position.class).addComponent(entity, new Position());
+		this.world.update();
+		Assert.assertFalse(this.system.isInThisSystem(entity));
+
+		this.world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		this.world.update();
+		Assert.assertTrue(this.system.isInThisSystem(entity));
+
+		this.world.getMapper(Frozen.class).addComponent(entity, new Frozen());
+		this.world.update();
+		Assert.assertFalse(this.system.isInThisSystem(entity));
+
+		this.world.getMapper(Frozen.class).removeComponent(entity);
+		this.world.update();
+		Assert.assertTrue(this.system.isInThisSystem(entity));
+
+		this.world.destroyEntity(entity);
+		this.world.update();
+		Assert.assertFalse(this.system.isInThisSystem(entity));
+	}
+
+	@Test
+	public void randomOperations() {
+		Random random = new Random(42);
+		int[] entities = this.world.createEntities(200);
+
+		for (int step = 0; step < 50; step++) {
+			for (int i = 0; i < 100; i++) {
+				int entity = entities[random.nextInt(entities.length)];
+				if (!this.world.getEntities().get(entity)) {
+					continue;
+				}
+
+				switch (random.nextInt(7)) {
+					case 0:
+						this.world.getMapper(Position.class).addComponent(entity, new Position());
+						break;
+					case 1:
+						this.world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+						break;
+					case 2:
+						this.world.getMapper(Frozen.class).addComponent(entity, new Frozen());
+						break;
+					case 3:
+						if (this.world.hasComponentAndWillKeepIt(entity, Position.class)) {
+							this.world.getMapper(Position.class).removeComponent(entity);
+						}
+						break;
+					case 4:
+						if (this.world.hasComponentAndWillKeepIt(entity, Frozen.class)) {
+							this.world.getMapper(Frozen.class).removeComponent(entity);
+						}
+						break;
+					case 5:
+						this.world.destroyEntity(entity);
+						break;
+					default:
+						entities[random.nextInt(entities.length)] = this.world.createEntity();
+						break;
+				}
+			}
+
+			this.world.update();
+
+			BitSet expected = this.world.getEntities();
+			expected.and(this.world.getMapper(Position.class).getEntitiesWithComponent());
+			expected.and(this.world.getMapper(Velocity.class).getEntitiesWithComponent());
+			expected.andNot(this.world.getMapper(Frozen.class).getEntitiesWithComponent());
+
+			Assert.assertEquals(expected, this.system.getEntities());
+		}
+	}
+
+	@Test
+	public void skipUnrelatedChanges() {
+		int entity = this.world.createEntity();
+		this.world.getMapper(Position.class).addComponent(entity, new Position());
+		this.world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		this.world.update();
+
+		long updates = this.world.getFilterUpdateCount();
+		long skipped = this.world.getSkippedFilterUpdateCount();
+
+		this.world.getMapper(Name.class).addComponent(entity, new Name());
+		this.world.update();
+
+		Assert.assertEquals(updates, this.world.getFilterUpdateCount());
+		Assert.assertEquals(skipped + 1, this.world.getSkippedFilterUpdateCount());
+		Assert.assertTrue(this.system.isInThisSystem(entity));
+
+		this.world.getMapper(Frozen.class).addComponent(entity, new Frozen());
+		this.world.update();
+
+		Assert.assertEquals(updates + 1, this.world.getFilterUpdateCount());
+		Assert.assertFalse(this.system.isInThisSystem(entity));
+
+		// Nothing modified, nothing to skip.
+		this.world.update();
+		Assert.assertEquals(updates + 1, this.world.getFilterUpdateCount());
+		Assert.assertEquals(skipped + 1, this.world.getSkippedFilterUpdateCount());
+	}
+}
@@ -0,0 +1,265 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+public class FilteredSystemTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	public static class Frozen extends Component {
+		boolean value;
+	}
+
+	private static class TrackingSystem extends FilteredSystem {
+		private final BitSet tracked = new BitSet();
+		private int insertions;
+		private int removals;
+		private int bulkInsertions;
+		private int bulkRemovals;
+
+		TrackingSystem() {
+			super(new Filter(new HashSet<>(Arrays.asList(Position.class, Velocity.class)),
+					new HashSet<>(Collections.singletonList(Frozen.class))));
+		}
+
+		@Override
+		protected void update(int entity) {
+		}
+
+		@Override
+		protected void inserted(BitSet entities) {
+			this.bulkInsertions++;
+			super.inserted(entities);
+		}
+
+		@Override
+		protected void inserted(int entity) {
+			Assert.assertFalse(this.tracked.get(entity));
+			this.tracked.set(entity);
+			this.insertions++;
+		}
+
+		@Override
+		protected void removed(BitSet entities) {
+			this.bulkRemovals++;
+			super.removed(entities);
+		}
+
+		@Override
+		protected void removed(int entity) {
+			Assert.assertTrue(this.tracked.get(entity));
+			this.tracked.clear(entity);
+			this.removals++;
+		}
+	}
+
+	private static class ResetSystem extends BaseSystem {
+		@Override
+		protected void initialize() {
+			World world = getWorld();
+			int entity = world.createEntity();
+			world.getMapper(Position.class).addComponent(entity, new Position());
+			world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+
+			// Computes the entities of the filter before its systems are given them.
+			Assert.assertEquals(1, world.query(new TrackingSystem().getFilter()).count());
+			world.reset();
+		}
+
+		@Override
+		protected void update() {
+		}
+	}
+
+	@Test
+	public void insertedAndRemoved() {
+		insertedAndRemoved(WorldBuilder.Backend.BITSET);
+		insertedAndRemoved(WorldBuilder.Backend.ARCHETYPE);
+	}
+
+	@Test
+	public void onlyChangesAreGiven() {
+		onlyChangesAreGiven(WorldBuilder.Backend.BITSET);
+		onlyChangesAreGiven(WorldBuilder.Backend.ARCHETYPE);
+	}
+
+	@Test
+	public void reset() {
+		reset(WorldBuilder.Backend.BITSET);
+		reset(WorldBuilder.Backend.ARCHETYPE);
+	}
+
+	@Test
+	public void randomChanges() {
+		randomChanges(WorldBuilder.Backend.BITSET);
+		randomChanges(WorldBuilder.Backend.ARCHETYPE);
+	}
+
+	@Test
+	public void compressedEntities() {
+		insertedAndRemoved(WorldBuilder.Backend.BITSET, EntitySetStorage.COMPRESSED);
+		randomChanges(WorldBuilder.Backend.BITSET, EntitySetStorage.COMPRESSED);
+		randomChanges(WorldBuilder.Backend.ARCHETYPE, EntitySetStorage.COMPRESSED);
+	}
+
+	private void insertedAndRemoved(WorldBuilder.Backend backend) {
+		insertedAndRemoved(backend, EntitySetStorage.BITSET);
+	}
+
+	private void insertedAndRemoved(WorldBuilder.Backend backend, EntitySetStorage storage) {
+		TrackingSystem system = new TrackingSystem();
+		World world = new WorldBuilder().addSystem(system).setBackend(backend).setEntitySetStorage(storage).toWorld();
+
+		int entity = world.createEntity();
+		world.getMapper(Position.class).addComponent(entity, new Position());
+		world.update();
+		Assert.assertEquals(0, system.insertions);
+
+		world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		world.update();
+		Assert.assertEquals(1, system.insertions);
+		Assert.assertTrue(system.tracked.get(entity));
+
+		world.getMapper(Frozen.class).addComponent(entity, new Frozen());
+		world.update();
+		Assert.assertEquals(1, system.removals);
+		Assert.assertFalse(system.tracked.get(entity));
+
+		world.getMapper(Frozen.class).removeComponent(entity);
+		world.update();
+		Assert.assertEquals(2, system.insertions);
+
+		world.destroyEntity(entity);
+		world.update();
+		Assert.assertEquals(2, system.removals);
+		Assert.assertTrue(system.tracked.isEmpty());
+	}
+
+	private void onlyChangesAreGiven(WorldBuilder.Backend backend) {
+		TrackingSystem system = new TrackingSystem();
+		World world = new WorldBuilder().addSystem(system).setBackend(backend).toWorld();
+
+		int[] entities = world.createEntities(100, (componentManager, entity) -> {
+			componentManager.addComponent(entity, Position.class, new Position());
+			componentManager.addComponent(entity, Velocity.class, new Velocity());
+		});
+		world.update();
+		Assert.assertEquals(100, system.insertions);
+		Assert.assertEquals(1, system.bulkInsertions);
+
+		// Modified entities which stay in the system aren't given again.
+		for (int entity : entities) {
+			world.getMapper(Position.class).getComponent(entity).x = 1;
+			world.getMapper(Position.class).modified(entity);
+		}
+		world.getMapper(Frozen.class).addComponent(entities[0], new Frozen());
+		world.update();
+		Assert.assertEquals(100, system.insertions);
+		Assert.assertEquals(1, system.bulkInsertions);
+		Assert.assertEquals(1, system.removals);
+		Assert.assertEquals(1, system.bulkRemovals);
+	}
+
+	private void reset(WorldBuilder.Backend backend) {
+		TrackingSystem system = new TrackingSystem();
+		World world = new WorldBuilder().addSystem(system).setBackend(backend).toWorld();
+
+		world.createEntities(10, (componentManager, entity) -> {
+			componentManager.addComponent(entity, Position.class, new Position());
+			componentManager.addComponent(entity, Velocity.class, new Velocity());
+		});
+		world.update();
+		Assert.assertEquals(10, system.tracked.cardinality());
+
+		world.reset();
+		Assert.assertEquals(10, system.removals);
+		Assert.assertTrue(system.tracked.isEmpty());
+
+		int entity = world.createEntity();
+		world.getMapper(Position.class).addComponent(entity, new Position());
+		world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		world.update();
+		Assert.assertEquals(11, system.insertions);
+		Assert.assertTrue(system.tracked.get(entity));
+	}
+
+	@Test
+	public void resetBeforeFirstUpdate() {
+		TrackingSystem system = new TrackingSystem();
+		World world = new WorldBuilder().addSystem(system).addSystem(new ResetSystem()).toWorld();
+		Assert.assertEquals(0, system.removals);
+		Assert.assertEquals(0, system.insertions);
+
+		int entity = world.createEntity();
+		world.getMapper(Position.class).addComponent(entity, new Position());
+		world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		world.update();
+		Assert.assertEquals(1, system.insertions);
+		Assert.assertEquals(0, system.removals);
+	}
+
+	private void randomChanges(WorldBuilder.Backend backend) {
+		randomChanges(backend, EntitySetStorage.BITSET);
+	}
+
+	private void randomChanges(WorldBuilder.Backend backend, EntitySetStorage storage) {
+		TrackingSystem system = new TrackingSystem();
+		World world = new WorldBuilder().addSystem(system).setBackend(backend).setEntitySetStorage(storage).toWorld();
+
+		Random random = new Random(23);
+		BitSet alive = new BitSet();
+
+		for (int step = 0; step < 50; step++) {
+			for (int i = 0; i < 20; i++) {
+				int entity = random.nextInt(64);
+
+				if (!alive.get(entity)) {
+					alive.set(world.createEntity());
+					continue;
+				}
+
+				switch (random.nextInt(4)) {
+					case 0:
+						toggle(world.getMapper(Position.class), entity, new Position());
+						break;
+					case 1:
+						toggle(world.getMapper(Velocity.class), entity, new Velocity());
+						break;
+					case 2:
+						toggle(world.getMapper(Frozen.class), entity, new Frozen());
+						break;
+					default:
+						world.destroyEntity(entity);
+						alive.clear(entity);
+						break;
+				}
+			}
+
+			world.update();
+
+			for (int entity = 0; entity < 64; entity++) {
+				Assert.assertEquals(system.isInThisSystem(entity), system.tracked.get(entity));
+			}
+		}
+	}
+
+	private static <T extends Component> void toggle(ComponentMapper<T> mapper, int entity, T component) {
+		if (mapper.hasComponent(entity)) {
+			mapper.removeComponent(entity);
+		} else {
+			mapper.addComponent(entity, component);
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class ListenerTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	private World world;
+
+	@Before
+	public void init() {
+		this.world = new WorldBuilder().toWorld();
+	}
+
+	@Test
+	public void componentListener() {
+		List<Integer> added = new ArrayList<>();
+		List<ComponentType> types = new ArrayList<>();
+		this.world.setComponentAddedListener((entity, type) -> {
+			added.add(entity);
+			types.add(type);
+		});
+
+		int entity = this.world.createEntity();
+		this.world.getMapper(Position.class).addComponent(entity, new Position());
+
+		Assert.assertEquals(1, added.size());
+		Assert.assertEquals(entity, added.get(0).intValue());
+		Assert.assertSame(ComponentType.of(Position.class), types.get(0));
+	}
+
+	@Test
+	public void delayedEvents() {
+		List<Integer> removed = new ArrayList<>();
+		this.world.setComponentRemovedListener((entity, type) -> removed.add(entity));
+
+		int[] entities = this.world.createEntities(3);
+		for (int entity : entities) {
+			this.world.getMapper(Position.class).addComponent(entity, new Position());
+		}
+
+		this.world.destroyEntities(entities);
+
+		Assert.assertEquals(3, removed.size());
+		Assert.assertEquals(entities[0], removed.get(0).intValue());
+		Assert.assertEquals(entities[2], removed.get(2).intValue());
+	}
+
+	@Test
+	public void eventHandlerAdapter() {
+		List<ComponentEvent> events = new ArrayList<>();
+		this.world.setOnComponentAdded(events::add);
+
+		int entity = this.world.createEntity();
+		ComponentMapper<Position> mapper = this.world.getMapper(Position.class);
+		mapper.addComponent(entity, new Position());
+
+		Assert.assertEquals(1, events.size());
+		Assert.assertEquals(ComponentEvent.Type.ADDED, events.get(0).getType());
+		Assert.assertEquals(Position.class, events.get(0).getComponentClass());
+		Assert.assertSame(mapper, events.get(0).getSource());
+
+		this.world.setOnComponentAdded(null);
+		mapper.addComponent(this.world.createEntity(), new Position());
+		Assert.assertEquals(1, events.size());
+	}
+
+	@Test
+	public void entityListener() {
+		List<Integer> created = new ArrayList<>();
+		List<Integer> removed = new ArrayList<>();
+		this.world.setEntityCreatedListener(created::add);
+		this.world.setEntityRemovedListener(removed::add);
+
+		int entity = this.world.createEntity();
+		this.world.createEntities(2);
+		this.world.destroyEntity(entity);
+
+		Assert.assertEquals(3, created.size());
+		Assert.assertEquals(1, removed.size());
+		Assert.assertEquals(entity, removed.get(0).intValue());
+	}
+
+	@Test
+	public void batchListener() {
+		List<BitSet> added = new ArrayList<>();
+		List<BitSet> removed = new ArrayList<>();
+		this.world.setComponentBatchListener((type, addedEntities, removedEntities) -> {
+			Assert.assertSame(ComponentType.of(Position.class), type);
+			added.add((BitSet) addedEntities.clone());
+			removed.add((BitSet) removedEntities.clone());
+		});
+
+		int[] entities = this.world.createEntities(3);
+		ComponentMapper<Position> mapper = this.world.getMapper(Position.class);
+		mapper.addComponent(entities[0], new Position());
+		mapper.addComponent(entities[1], new Position());
+		this.world.update();
+
+		Assert.assertEquals(1, added.size());
+		Assert.assertEquals(2, added.get(0).cardinality());
+		Assert.assertTrue(removed.get(0).isEmpty());
+
+		// Added then removed in the same iteration: nothing to report for entities[2].
+		mapper.addComponent(entities[2], new Position());
+		mapper.removeComponent(entities[2]);
+		mapper.removeComponent(entities[0]);
+		this.world.update();
+
+		Assert.assertEquals(2, added.size());
+		Assert.assertTrue(added.get(1).isEmpty());
+		Assert.assertEquals(1, removed.get(1).cardinality());
+		Assert.assertTrue(removed.get(1).get(entities[0]));
+
+		this.world.update();
+		Assert.assertEquals(2, added.size());
+	}
+
+	@Test
+	public void batchListenerReportsFlushedChanges() {
+		List<BitSet> added = new ArrayList<>();
+		List<BitSet> removed = new ArrayList<>();
+		this.world.setComponentBatchListener((type, addedEntities, removedEntities) -> {
+			added.add((BitSet) addedEntities.clone());
+			removed.add((BitSet) removedEntities.clone());
+		});
+
+		int[] entities = this.world.createEntities(4);
+		ComponentMapper<Position> mapper = this.world.getMapper(Position.class);
+		mapper.addComponent(entities[0], new Position());
+		mapper.addComponent(entities[1], new Position());
+		this.world.update();
+		Assert.assertEquals(1, added.size());
+
+		// Removed then added in the same iteration: the removal is still applied by the flush.
+		mapper.removeComponent(entities[0]);
+		mapper.addComponent(entities[0], new Position());
+		// Added then removed in the same iteration: the entity never owns the component.
+		mapper.addComponent(entities[2], new Position());
+		mapper.removeComponent(entities[2]);
+		// Replaced and removed without owning it: nothing changes.
+		mapper.addComponent(entities[1], new Position());
+		mapper.removeComponent(entities[3]);
+		this.world.update();
+
+		Assert.assertFalse(mapper.hasComponent(entities[0]));
+		Assert.assertEquals(2, added.size());
+		Assert.assertTrue(added.get(1).isEmpty());
+		Assert.assertEquals(1, removed.get(1).cardinality());
+		Assert.assertTrue(removed.get(1).get(entities[0]));
+
+		// Only replacements: nothing to report.
+		mapper.addComponent(entities[1], new Position());
+		this.world.update();
+		Assert.assertEquals(2, added.size());
+	}
+
+	@Test
+	public void typedSubscribers() {
+		List<String> calls = new ArrayList<>();
+		IntComponentListener first = (entity, type) -> calls.add("first");
+		IntComponentListener second = (entity, type) -> calls.add("second");
+
+		// Subscribing before the mapper exists.
+		this.world.addComponentAddedListener(ComponentType.of(Position.class), first);
+		this.world.addComponentAddedListener(ComponentType.of(Position.class), second);
+		this.world.addComponentRemovedListener(ComponentType.of(Position.class), first);
+		this.world.setComponentAddedListener((entity, type) -> calls.add("global"));
+
+		int entity = this.world.createEntity();
+		this.world.getMapper(Position.class).addComponent(entity, new Position());
+		this.world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+
+		Assert.assertEquals(4, calls.size());
+		Assert.assertEquals("global", calls.get(0));
+		Assert.assertEquals("first", calls.get(1));
+		Assert.assertEquals("second", calls.get(2));
+		Assert.assertEquals("global", calls.get(3));
+
+		calls.clear();
+		Assert.assertTrue(this.world.removeComponentAddedListener(ComponentType.of(Position.class), first));
+		Assert.assertFalse(this.world.removeComponentAddedListener(ComponentType.of(Velocity.class), first));
+		this.world.setComponentAddedListener(null);
+
+		this.world.getMapper(Position.class).addComponent(this.world.createEntity(), new Position());
+		this.world.getMapper(Position.class).removeComponent(entity);
+
+		Assert.assertEquals(2, calls.size());
+		Assert.assertEquals("second", calls.get(0));
+		Assert.assertEquals("first", calls.get(1));
+	}
+}
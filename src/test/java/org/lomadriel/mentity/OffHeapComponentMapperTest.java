@@ -0,0 +1,87 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class OffHeapComponentMapperTest {
+	public static class Body extends Component {
+		double mass;
+		float x;
+		int flags;
+		long id;
+	}
+
+	private OffHeapComponentMapper<Body> mapper;
+
+	@Before
+	public void init() {
+		this.mapper = new OffHeapComponentMapper<>(Body.class);
+	}
+
+	@Test
+	public void addAndGetComponent() {
+		Body body = new Body();
+		body.mass = 2.5;
+		body.x = 4.0f;
+		body.flags = 7;
+		body.id = Long.MAX_VALUE;
+
+		this.mapper.addComponent(5000, body);
+
+		Assert.assertEquals(2.5, this.mapper.getDouble(5000, this.mapper.doubleOffset("mass")), 0.0);
+		Assert.assertEquals(Long.MAX_VALUE, this.mapper.getLong(5000, this.mapper.longOffset("id")));
+
+		Body loaded = this.mapper.getComponent(5000);
+		Assert.assertEquals(4.0f, loaded.x, 0.0f);
+		Assert.assertEquals(7, loaded.flags);
+	}
+
+	@Test
+	public void pagesFollowFlush() {
+		Assert.assertEquals(0, this.mapper.getAllocatedMemory());
+
+		this.mapper.create(1);
+		this.mapper.create(2);
+		long pageSize = this.mapper.getAllocatedMemory();
+		Assert.assertTrue(pageSize > 0);
+
+		this.mapper.create(100000);
+		Assert.assertEquals(2 * pageSize, this.mapper.getAllocatedMemory());
+
+		this.mapper.removeComponent(100000);
+		this.mapper.removeComponent(1);
+		this.mapper.flush();
+		Assert.assertEquals(pageSize, this.mapper.getAllocatedMemory());
+
+		this.mapper.dispose();
+		Assert.assertEquals(0, this.mapper.getAllocatedMemory());
+	}
+
+	@Test
+	public void serialization() throws Exception {
+		OffHeapComponentMapper<Body>.Accessor accessor = this.mapper.accessor();
+		int x = this.mapper.floatOffset("x");
+
+		this.mapper.create(10);
+		accessor.at(10).setFloat(x, 42.0f);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(this.mapper);
+		}
+
+		OffHeapComponentMapper<Body> loadedMapper;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			loadedMapper = (OffHeapComponentMapper<Body>) ois.readObject();
+		}
+
+		Assert.assertTrue(loadedMapper.hasComponent(10));
+		Assert.assertEquals(42.0f, loadedMapper.accessor().at(10).getFloat(x), 0.0f);
+	}
+}
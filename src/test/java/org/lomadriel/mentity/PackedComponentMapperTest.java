@@ -0,0 +1,67 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackedComponentMapperTest {
+	public static class Position extends Component {
+		float x;
+		float y;
+		int layer;
+	}
+
+	public static class Invalid extends Component {
+		String name;
+	}
+
+	private PackedComponentMapper<Position> mapper;
+
+	@Before
+	public void init() {
+		this.mapper = new PackedComponentMapper<>(Position.class);
+	}
+
+	@Test
+	public void addAndGetComponent() {
+		Position position = new Position();
+		position.x = 1.0f;
+		position.y = 2.0f;
+		position.layer = 3;
+
+		this.mapper.addComponent(100, position);
+
+		Assert.assertTrue(this.mapper.hasComponent(100));
+		Assert.assertEquals(2.0f, this.mapper.getFloat(100, this.mapper.floatColumn("y")), 0.0f);
+		Assert.assertEquals(3, this.mapper.getInt(100, this.mapper.intColumn("layer")));
+
+		Position loaded = this.mapper.getComponent(100);
+		Assert.assertNotSame(position, loaded);
+		Assert.assertEquals(100, loaded.getEntity());
+		Assert.assertEquals(1.0f, loaded.x, 0.0f);
+	}
+
+	@Test
+	public void accessor() {
+		int x = this.mapper.floatColumn("x");
+		PackedComponentMapper<Position>.Accessor accessor = this.mapper.accessor();
+
+		for (int entity = 0; entity < 40; entity++) {
+			this.mapper.create(entity);
+			accessor.at(entity).setFloat(x, entity);
+		}
+
+		this.mapper.removeComponent(5);
+		this.mapper.flush();
+		this.mapper.create(5);
+
+		Assert.assertEquals(0.0f, accessor.at(5).getFloat(x), 0.0f);
+		Assert.assertEquals(39.0f, accessor.at(39).getFloat(x), 0.0f);
+		Assert.assertEquals(40, this.mapper.getEntitiesWithComponent().cardinality());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidComponent() {
+		new PackedComponentMapper<>(Invalid.class);
+	}
+}
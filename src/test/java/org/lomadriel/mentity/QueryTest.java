@@ -0,0 +1,223 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+public class QueryTest {
+	public static class Position extends Component {
+		float x;
+	}
+
+	public static class Velocity extends Component {
+		float x;
+	}
+
+	public static class Frozen extends Component {
+		boolean value;
+	}
+
+	private static class MovementSystem extends FilteredSystem {
+		MovementSystem() {
+			super(movement());
+		}
+
+		@Override
+		protected void update(int entity) {
+		}
+	}
+
+	private static class QueryingSystem extends FilteredSystem {
+		private Query query;
+
+		QueryingSystem() {
+			super(movement());
+		}
+
+		@Override
+		protected void update(int entity) {
+		}
+
+		@Override
+		protected void inserted(BitSet entities) {
+			if (this.query == null && entities.cardinality() == 1) {
+				this.query = getWorld().query(new Filter(Velocity.class));
+			}
+		}
+	}
+
+	private static class PositionSystem extends FilteredSystem {
+		PositionSystem() {
+			super(new Filter(Position.class));
+		}
+
+		@Override
+		protected void update(int entity) {
+		}
+	}
+
+	private static Filter movement() {
+		return new Filter(new HashSet<>(Arrays.asList(Position.class, Velocity.class)),
+				new HashSet<>(Collections.singletonList(Frozen.class)));
+	}
+
+	@Test
+	public void queriesAreCached() {
+		World world = new WorldBuilder().toWorld();
+
+		Query query = world.query(movement());
+		Assert.assertSame(query, world.query(movement()));
+		Assert.assertEquals(movement(), query.getFilter());
+	}
+
+	@Test
+	public void queryIsComputedImmediately() {
+		queryIsComputedImmediately(WorldBuilder.Backend.BITSET);
+		queryIsComputedImmediately(WorldBuilder.Backend.ARCHETYPE);
+	}
+
+	@Test
+	public void queryIsLive() {
+		queryIsLive(WorldBuilder.Backend.BITSET, EntitySetStorage.BITSET);
+		queryIsLive(WorldBuilder.Backend.BITSET, EntitySetStorage.COMPRESSED);
+		queryIsLive(WorldBuilder.Backend.ARCHETYPE, EntitySetStorage.BITSET);
+	}
+
+	@Test
+	public void queryOfSystemFilter() {
+		MovementSystem system = new MovementSystem();
+		World world = new WorldBuilder().addSystem(system).toWorld();
+
+		int entity = world.createEntity();
+		world.getMapper(Position.class).addComponent(entity, new Position());
+		world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		world.update();
+
+		Query query = world.query(movement());
+		Assert.assertEquals(1, query.count());
+		Assert.assertTrue(system.isInThisSystem(entity));
+	}
+
+	@Test
+	public void queryFromHook() {
+		QueryingSystem system = new QueryingSystem();
+		PositionSystem positionSystem = new PositionSystem();
+		World world = new WorldBuilder().addSystem(system).addSystem(positionSystem).toWorld();
+
+		for (int i = 0; i < 10; i++) {
+			int entity = world.createEntity();
+			world.getMapper(Position.class).addComponent(entity, new Position());
+
+			if (i % 2 == 0) {
+				world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+			}
+		}
+
+		world.update();
+		Assert.assertNull(system.query);
+
+		// The new filter is queried while the other filters are being updated.
+		int entity = world.createEntity();
+		world.getMapper(Position.class).addComponent(entity, new Position());
+		world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+		world.update();
+		Assert.assertEquals(6, system.query.count());
+		Assert.assertTrue(positionSystem.isInThisSystem(entity));
+
+		world.getMapper(Velocity.class).removeComponent(0);
+		world.getMapper(Velocity.class).addComponent(1, new Velocity());
+		world.update();
+		Assert.assertEquals(6, system.query.count());
+		Assert.assertFalse(system.query.contains(0));
+		Assert.assertTrue(system.query.contains(1));
+		Assert.assertSame(system.query, world.query(new Filter(Velocity.class)));
+	}
+
+	private void queryIsComputedImmediately(WorldBuilder.Backend backend) {
+		World world = new WorldBuilder().setBackend(backend).toWorld();
+
+		for (int i = 0; i < 10; i++) {
+			int entity = world.createEntity();
+			world.getMapper(Position.class).addComponent(entity, new Position());
+
+			if (i % 2 == 0) {
+				world.getMapper(Velocity.class).addComponent(entity, new Velocity());
+			}
+		}
+
+		world.update();
+
+		Query query = world.query(movement());
+		Assert.assertEquals(5, query.count());
+		Assert.assertTrue(query.contains(0));
+		Assert.assertFalse(query.contains(1));
+	}
+
+	private void queryIsLive(WorldBuilder.Backend backend, EntitySetStorage storage) {
+		World world = new WorldBuilder().setBackend(backend).setEntitySetStorage(storage).toWorld();
+		Query query = world.query(movement());
+		Assert.assertTrue(query.isEmpty());
+
+		Random random = new Random(25);
+
+		for (int step = 0; step < 50; step++) {
+			for (int i = 0; i < 20; i++) {
+				int entity = random.nextInt(64);
+
+				if (!world.getEntities().get(entity)) {
+					world.createEntity();
+					continue;
+				}
+
+				switch (random.nextInt(4)) {
+					case 0:
+						toggle(world.getMapper(Position.class), entity, new Position());
+						break;
+					case 1:
+						toggle(world.getMapper(Velocity.class), entity, new Velocity());
+						break;
+					case 2:
+						toggle(world.getMapper(Frozen.class), entity, new Frozen());
+						break;
+					default:
+						world.destroyEntity(entity);
+						break;
+				}
+			}
+
+			world.update();
+
+			BitSet expected = new BitSet();
+			for (int entity = 0; entity < 64; entity++) {
+				if (world.getEntities().get(entity)
+						&& world.getMapper(Position.class).hasComponent(entity)
+						&& world.getMapper(Velocity.class).hasComponent(entity)
+						&& !world.getMapper(Frozen.class).hasComponent(entity)) {
+					expected.set(entity);
+				}
+			}
+
+			BitSet actual = new BitSet();
+			query.forEach(actual::set);
+
+			Assert.assertEquals(expected, actual);
+			Assert.assertEquals(expected.cardinality(), query.count());
+		}
+
+		world.reset();
+		Assert.assertEquals(0, query.count());
+	}
+
+	private static <T extends Component> void toggle(ComponentMapper<T> mapper, int entity, T component) {
+		if (mapper.hasComponent(entity)) {
+			mapper.removeComponent(entity);
+		} else {
+			mapper.addComponent(entity, component);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Objects;
+
+public class SharedComponentMapperTest {
+	public static class Faction extends Component {
+		final String name;
+
+		Faction(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Faction && Objects.equals(this.name, ((Faction) o).name);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(this.name);
+		}
+	}
+
+	private SharedComponentMapper<Faction> mapper;
+
+	@Before
+	public void init() {
+		this.mapper = new SharedComponentMapper<>(Faction.class);
+
+		for (int i = 0; i < 10; i++) {
+			this.mapper.addComponent(i, new Faction(i % 2 == 0 ? "red" : "blue"));
+		}
+	}
+
+	@Test
+	public void groups() {
+		Assert.assertEquals(2, this.mapper.getValueCount());
+
+		int red = this.mapper.indexOf(new Faction("red"));
+		Assert.assertEquals(5, this.mapper.getReferenceCount(red));
+		Assert.assertEquals(5, this.mapper.getEntities(red).cardinality());
+		Assert.assertTrue(this.mapper.getEntities(red).get(4));
+		Assert.assertSame(this.mapper.getComponent(0), this.mapper.getComponent(8));
+		Assert.assertEquals(red, this.mapper.getValueIndex(2));
+	}
+
+	@Test
+	public void release() {
+		int blue = this.mapper.indexOf(new Faction("blue"));
+
+		for (int i = 1; i < 10; i += 2) {
+			this.mapper.removeComponent(i);
+		}
+
+		this.mapper.flush();
+
+		Assert.assertNull(this.mapper.getValue(blue));
+		Assert.assertEquals(-1, this.mapper.indexOf(new Faction("blue")));
+
+		// The released index is reused.
+		this.mapper.addComponent(1, new Faction("green"));
+		Assert.assertEquals(blue, this.mapper.indexOf(new Faction("green")));
+		Assert.assertEquals(2, this.mapper.getValueCount());
+	}
+
+	@Test
+	public void replace() {
+		int red = this.mapper.indexOf(new Faction("red"));
+
+		this.mapper.addComponent(0, new Faction("blue"));
+
+		Assert.assertEquals(4, this.mapper.getReferenceCount(red));
+		Assert.assertFalse(this.mapper.getEntities(red).get(0));
+		Assert.assertEquals("blue", this.mapper.getComponent(0).name);
+	}
+}
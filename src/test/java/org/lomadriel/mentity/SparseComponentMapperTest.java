@@ -0,0 +1,55 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SparseComponentMapperTest {
+	public static class Health extends Component {
+		int value;
+
+		Health(int value) {
+			this.value = value;
+		}
+	}
+
+	private SparseComponentMapper<Health> mapper;
+
+	@Before
+	public void init() {
+		this.mapper = new SparseComponentMapper<>(Health.class);
+
+		for (int i = 0; i < 20; i++) {
+			this.mapper.addComponent(i * 100000, new Health(i));
+		}
+	}
+
+	@Test
+	public void denseIteration() {
+		Assert.assertEquals(20, this.mapper.getDenseSize());
+
+		for (int i = 0; i < this.mapper.getDenseSize(); i++) {
+			int entity = this.mapper.getDenseEntity(i);
+			Assert.assertEquals(entity, this.mapper.getDenseComponent(i).getEntity());
+			Assert.assertSame(this.mapper.getComponent(entity), this.mapper.getDenseComponent(i));
+		}
+	}
+
+	@Test
+	public void swapRemove() {
+		this.mapper.removeComponent(0);
+		this.mapper.removeComponent(500000);
+		Assert.assertEquals(20, this.mapper.getDenseSize());
+
+		this.mapper.flush();
+
+		Assert.assertEquals(18, this.mapper.getDenseSize());
+		Assert.assertFalse(this.mapper.hasComponent(0));
+		Assert.assertNull(this.mapper.getComponent(500000));
+		Assert.assertEquals(19, this.mapper.getComponent(1900000).value);
+
+		for (int i = 0; i < this.mapper.getDenseSize(); i++) {
+			Assert.assertSame(this.mapper.getComponent(this.mapper.getDenseEntity(i)), this.mapper.getDenseComponent(i));
+		}
+	}
+}
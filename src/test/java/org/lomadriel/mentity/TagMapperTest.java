@@ -0,0 +1,65 @@
+package org.lomadriel.mentity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+public class TagMapperTest {
+	public static class Dead extends Tag {
+	}
+
+	public static class Position extends Component {
+		float x;
+	}
+
+	private TagMapper<Dead> mapper;
+
+	@Before
+	public void init() {
+		this.mapper = new TagMapper<>(Dead.class);
+	}
+
+	@Test
+	public void addAndRemove() {
+		this.mapper.add(3);
+		Assert.assertTrue(this.mapper.hasComponent(3));
+		Assert.assertNull(this.mapper.getComponent(3));
+
+		this.mapper.remove(3);
+		Assert.assertFalse(this.mapper.hasComponentAndWillKeepIt(3));
+
+		this.mapper.flush();
+		Assert.assertFalse(this.mapper.hasComponent(3));
+	}
+
+	@Test
+	public void bulk() {
+		BitSet entities = new BitSet();
+		entities.set(0, 100);
+
+		this.mapper.add(entities);
+		Assert.assertEquals(100, this.mapper.getEntitiesWithComponent().cardinality());
+
+		BitSet removed = new BitSet();
+		removed.set(50, 150);
+
+		this.mapper.remove(removed);
+		this.mapper.flush();
+
+		Assert.assertEquals(50, this.mapper.getEntitiesWithComponent().cardinality());
+		Assert.assertEquals(49, this.mapper.getEntitiesWithComponent().length() - 1);
+	}
+
+	@Test
+	public void defaultStorage() {
+		Assert.assertEquals(ComponentStorage.TAG, ComponentStorage.defaultOf(Dead.class));
+		Assert.assertEquals(ComponentStorage.DEFAULT, ComponentStorage.defaultOf(Position.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void componentWithFields() {
+		new TagMapper<>(Position.class);
+	}
+}
@@ -0,0 +1,299 @@
+package org.lomadriel.mentity.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.BitSet;
+import java.util.Random;
+
+public class CompressedEntitySetTest {
+	@Test
+	public void addAndRemove() {
+		CompressedEntitySet set = new CompressedEntitySet();
+		set.add(3);
+		set.add(70000);
+		set.add(3);
+
+		Assert.assertEquals(2, set.cardinality());
+		Assert.assertTrue(set.contains(70000));
+		Assert.assertFalse(set.contains(70001));
+		Assert.assertEquals(70000, set.nextEntity(4));
+		Assert.assertEquals(-1, set.nextEntity(70001));
+
+		set.remove(3);
+		set.remove(70000);
+		Assert.assertTrue(set.isEmpty());
+	}
+
+	@Test
+	public void containersAreConverted() {
+		CompressedEntitySet set = new CompressedEntitySet();
+		BitSet expected = new BitSet();
+
+		// Goes over the size of an array container, then back under it.
+		for (int entity = 0; entity < 10000; entity += 2) {
+			set.add(entity);
+			expected.set(entity);
+		}
+
+		assertSame(expected, set);
+
+		for (int entity = 0; entity < 10000; entity += 4) {
+			set.remove(entity);
+			expected.clear(entity);
+		}
+
+		assertSame(expected, set);
+	}
+
+	@Test
+	public void bulkOperations() {
+		Random random = new Random(24);
+
+		for (int step = 0; step < 50; step++) {
+			BitSet a = randomBitSet(random);
+			BitSet b = randomBitSet(random);
+
+			CompressedEntitySet set = new CompressedEntitySet();
+			set.or(a);
+			assertSame(a, set);
+
+			BitSet expected = (BitSet) a.clone();
+			BitSet result = new BitSet();
+			set.intersect(b, result);
+			expected.and(b);
+			Assert.assertEquals(expected, result);
+
+			CompressedEntitySet other = new CompressedEntitySet();
+			other.or(b);
+
+			switch (step % 4) {
+				case 0:
+					set.or(other);
+					expected = (BitSet) a.clone();
+					expected.or(b);
+					break;
+				case 1:
+					set.and(other);
+					expected = (BitSet) a.clone();
+					expected.and(b);
+					break;
+				case 2:
+					set.andNot(other);
+					expected = (BitSet) a.clone();
+					expected.andNot(b);
+					break;
+				default:
+					set.andNot(b);
+					expected = (BitSet) a.clone();
+					expected.andNot(b);
+					break;
+			}
+
+			assertSame(expected, set);
+		}
+	}
+
+	@Test
+	public void mixedSets() {
+		BitSetEntitySet bitSet = new BitSetEntitySet();
+		bitSet.add(5);
+		bitSet.add(100000);
+
+		CompressedEntitySet set = new CompressedEntitySet();
+		set.add(5);
+		set.add(6);
+		set.and(bitSet);
+		Assert.assertEquals(1, set.cardinality());
+
+		set.or(bitSet);
+		Assert.assertEquals(2, set.cardinality());
+
+		bitSet.andNot(set);
+		Assert.assertTrue(bitSet.isEmpty());
+	}
+
+	@Test
+	public void containerBoundary() throws Exception {
+		CompressedEntitySet set = new CompressedEntitySet();
+		BitSet expected = new BitSet();
+
+		// 4096 entities fit in an array container, one more needs a bitmap.
+		int base = 3 << 16;
+		for (int i = 0; i < 4096; i++) {
+			set.add(base + i * 3);
+			expected.set(base + i * 3);
+		}
+
+		Assert.assertEquals("ArrayContainer", containerType(set, 0));
+		assertSame(expected, set);
+
+		set.add(base + 1);
+		expected.set(base + 1);
+		Assert.assertEquals("BitmapContainer", containerType(set, 0));
+		assertSame(expected, set);
+
+		set.remove(base + 3);
+		expected.clear(base + 3);
+		Assert.assertEquals("ArrayContainer", containerType(set, 0));
+		assertSame(expected, set);
+
+		// Back over the limit by a bulk union, then under it by a bulk difference.
+		BitSet added = new BitSet();
+		added.set(base + 2);
+		added.set(base + 3);
+		set.or(added);
+		expected.or(added);
+		Assert.assertEquals("BitmapContainer", containerType(set, 0));
+		assertSame(expected, set);
+
+		set.andNot(added);
+		expected.andNot(added);
+		Assert.assertEquals("ArrayContainer", containerType(set, 0));
+		assertSame(expected, set);
+	}
+
+	@Test
+	public void mixedAndAndNot() {
+		Random random = new Random(7);
+
+		for (int step = 0; step < 20; step++) {
+			BitSet a = randomBitSet(random);
+			BitSet b = randomBitSet(random);
+
+			CompressedEntitySet compressed = new CompressedEntitySet();
+			compressed.or(a);
+			BitSetEntitySet bitSet = new BitSetEntitySet();
+			bitSet.or(b);
+
+			BitSet expected = (BitSet) a.clone();
+			if (step % 2 == 0) {
+				compressed.and(bitSet);
+				expected.and(b);
+			} else {
+				compressed.andNot(bitSet);
+				expected.andNot(b);
+			}
+			assertSame(expected, compressed);
+
+			compressed = new CompressedEntitySet();
+			compressed.or(a);
+			expected = (BitSet) b.clone();
+			if (step % 2 == 0) {
+				bitSet.and(compressed);
+				expected.and(a);
+			} else {
+				bitSet.andNot(compressed);
+				expected.andNot(a);
+			}
+			assertSame(expected, bitSet);
+		}
+	}
+
+	@Test
+	public void nextEntityAcrossChunks() {
+		CompressedEntitySet set = new CompressedEntitySet();
+		set.add(10);
+		set.add((5 << 16) + 7);
+		set.add((9 << 16) + 1);
+
+		Assert.assertEquals(10, set.nextEntity(0));
+		Assert.assertEquals((5 << 16) + 7, set.nextEntity(11));
+		// From a chunk without container.
+		Assert.assertEquals((5 << 16) + 7, set.nextEntity(2 << 16));
+		Assert.assertEquals((9 << 16) + 1, set.nextEntity((5 << 16) + 8));
+		Assert.assertEquals(-1, set.nextEntity((9 << 16) + 2));
+		Assert.assertEquals(-1, set.nextEntity(20 << 16));
+
+		// The emptied chunk is skipped.
+		set.remove((5 << 16) + 7);
+		Assert.assertEquals((9 << 16) + 1, set.nextEntity(11));
+	}
+
+	@Test
+	public void orIntoExistingChunk() {
+		CompressedEntitySet set = new CompressedEntitySet();
+		BitSet expected = new BitSet();
+		for (int entity = 0; entity < 100; entity++) {
+			set.add(entity * 2);
+			expected.set(entity * 2);
+		}
+
+		// Merged with the array container of the chunk.
+		BitSet entities = new BitSet();
+		entities.set(1);
+		entities.set(50, 60);
+		entities.set(70000);
+		set.or(entities);
+		expected.or(entities);
+		assertSame(expected, set);
+
+		// Merged with enough entities to need a bitmap.
+		entities.clear();
+		entities.set(1000, 6000);
+		set.or(entities);
+		expected.or(entities);
+		assertSame(expected, set);
+
+		// Merged with the bitmap container of the chunk.
+		entities.clear();
+		entities.set(6000, 6010);
+		entities.set(3);
+		set.or(entities);
+		expected.or(entities);
+		assertSame(expected, set);
+	}
+
+	private static BitSet randomBitSet(Random random) {
+		BitSet entities = new BitSet();
+
+		// Sparse chunks, dense chunks and full runs.
+		int chunks = random.nextInt(6);
+		for (int i = 0; i < chunks; i++) {
+			int base = random.nextInt(40) << 16;
+
+			switch (random.nextInt(3)) {
+				case 0:
+					for (int j = 0; j < 100; j++) {
+						entities.set(base + random.nextInt(1 << 16));
+					}
+					break;
+				case 1:
+					for (int j = 0; j < 20000; j++) {
+						entities.set(base + random.nextInt(1 << 16));
+					}
+					break;
+				default:
+					int from = base + random.nextInt(1 << 15);
+					entities.set(from, from + random.nextInt(1 << 15));
+					break;
+			}
+		}
+
+		return entities;
+	}
+
+	private static String containerType(CompressedEntitySet set, int index) throws Exception {
+		Field containers = CompressedEntitySet.class.getDeclaredField("containers");
+		containers.setAccessible(true);
+
+		return ((Object[]) containers.get(set))[index].getClass().getSimpleName();
+	}
+
+	private static void assertSame(BitSet expected, EntitySet actual) {
+		BitSet entities = new BitSet();
+		actual.forEach(entities::set);
+
+		Assert.assertEquals(expected, entities);
+		Assert.assertEquals(expected.cardinality(), actual.cardinality());
+
+		int entity = actual.nextEntity(0);
+		for (int i = expected.nextSetBit(0); i != -1; i = expected.nextSetBit(i + 1)) {
+			Assert.assertEquals(i, entity);
+			entity = actual.nextEntity(entity + 1);
+		}
+
+		Assert.assertEquals(-1, entity);
+	}
+}
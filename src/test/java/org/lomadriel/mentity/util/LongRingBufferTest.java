@@ -0,0 +1,55 @@
+package org.lomadriel.mentity.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongRingBufferTest {
+	@Test
+	public void offerAndPoll() {
+		LongRingBuffer buffer = new LongRingBuffer(3);
+		Assert.assertEquals(4, buffer.capacity());
+		Assert.assertEquals(LongRingBuffer.EMPTY, buffer.poll());
+
+		for (int i = 0; i < 4; i++) {
+			Assert.assertTrue(buffer.offer(i));
+		}
+
+		Assert.assertFalse(buffer.offer(4));
+		Assert.assertEquals(4, buffer.size());
+
+		Assert.assertEquals(0, buffer.poll());
+		Assert.assertTrue(buffer.offer(4));
+
+		for (int i = 1; i < 5; i++) {
+			Assert.assertEquals(i, buffer.poll());
+		}
+
+		Assert.assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void grow() {
+		LongRingBuffer buffer = new LongRingBuffer(4);
+
+		// Wraps around before growing.
+		buffer.offer(0);
+		buffer.offer(1);
+		buffer.poll();
+		buffer.poll();
+
+		for (int i = 0; i < 4; i++) {
+			buffer.offer(i);
+		}
+
+		buffer.grow();
+		Assert.assertEquals(8, buffer.capacity());
+
+		for (int i = 4; i < 8; i++) {
+			Assert.assertTrue(buffer.offer(i));
+		}
+
+		for (int i = 0; i < 8; i++) {
+			Assert.assertEquals(i, buffer.poll());
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package org.lomadriel.mentity.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class PagedBagTest {
+	private PagedBag<Integer> bag;
+
+	@Before
+	public void setUp() throws Exception {
+		this.bag = new PagedBag<>(4);
+
+		for (int i = 0; i < 10; i++) {
+			this.bag.set(i, i);
+		}
+
+		this.bag.set(1000, 1000);
+	}
+
+	@Test
+	public void pages() {
+		Assert.assertEquals(1001, this.bag.size());
+		Assert.assertEquals(32, this.bag.capacity());
+		Assert.assertNull(this.bag.get(500));
+		Assert.assertNull(this.bag.get(100000));
+
+		this.bag.set(1000, null);
+		Assert.assertEquals(16, this.bag.capacity());
+
+		this.bag.clear();
+		Assert.assertEquals(0, this.bag.capacity());
+		Assert.assertNull(this.bag.get(5));
+	}
+
+	@Test
+	public void serialization() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(this.bag);
+		}
+
+		PagedBag<Integer> loadedBag;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			loadedBag = (PagedBag<Integer>) ois.readObject();
+		}
+
+		Assert.assertEquals(this.bag.size(), loadedBag.size());
+		Assert.assertEquals(this.bag.capacity(), loadedBag.capacity());
+
+		for (int i = 0; i < this.bag.size(); i++) {
+			Assert.assertEquals(this.bag.get(i), loadedBag.get(i));
+		}
+	}
+}